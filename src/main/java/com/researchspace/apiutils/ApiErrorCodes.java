@@ -30,6 +30,8 @@ public enum ApiErrorCodes {
 	CONFIGURED_UNAVAILABLE(503_01)
 	;
 	
+	private static final ApiErrorCodes[] VALUES = values();
+
 	private final int code;
 	public int getCode() {
 		return code;
@@ -38,4 +40,16 @@ public enum ApiErrorCodes {
 	ApiErrorCodes(int code) {
 		this.code = code;
 	}
+
+	/**
+	 * @return the ApiErrorCodes with the given code, or <code>null</code> if there is none
+	 */
+	public static ApiErrorCodes fromCode(int code) {
+		for (ApiErrorCodes value : VALUES) {
+			if (value.code == code) {
+				return value;
+			}
+		}
+		return null;
+	}
 }
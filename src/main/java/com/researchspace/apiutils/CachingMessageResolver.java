@@ -0,0 +1,212 @@
+package com.researchspace.apiutils;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.context.MessageSource;
+import org.springframework.context.MessageSourceResolvable;
+import org.springframework.context.NoSuchMessageException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Resolves validation messages via a Spring {@link MessageSource}, caching the resolved text per
+ * (codes, arguments, default message, locale) so that requests with many field errors don't
+ * repeat locale lookup and <code>MessageFormat</code> parsing for each error.<br>
+ * The cache is bounded to <code>maxSize</code> entries; once full, the oldest entries are evicted first.
+ * Lookups are lock-free; adding, evicting and clearing entries is synchronized, so only cache misses contend.
+ * Hit, miss and eviction counts are available for monitoring.
+ * <br>
+ * Use from a <code>RestControllerAdvice</code> subclass by overriding
+ * {@link RestControllerAdvice#getMessageResolver()}.
+ */
+@Slf4j
+public class CachingMessageResolver {
+
+	public static final int DEFAULT_MAX_SIZE = 1000;
+
+	private final MessageSource messageSource;
+	private final int maxSize;
+	private final ConcurrentMap<MessageKey, String> cache = new ConcurrentHashMap<>();
+	// guarded by 'this', as are all modifications of cache
+	private final Queue<MessageKey> insertionOrder = new ArrayDeque<>();
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder evictions = new LongAdder();
+
+	public CachingMessageResolver(MessageSource messageSource) {
+		this(messageSource, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * @param messageSource the MessageSource to resolve messages from
+	 * @param maxSize       maximum number of resolved messages to hold, must be &gt; 0
+	 */
+	public CachingMessageResolver(MessageSource messageSource, int maxSize) {
+		if (messageSource == null) {
+			throw new IllegalArgumentException("messageSource cannot be null");
+		}
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("maxSize must be > 0 but was " + maxSize);
+		}
+		this.messageSource = messageSource;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Resolves a message, using a cached value if one exists for the same codes, arguments and locale.
+	 *
+	 * @param resolvable e.g. a FieldError or ObjectError
+	 * @param locale     the request locale; if <code>null</code> the default locale is used
+	 * @return the resolved message, or the resolvable's default message if it could not be resolved
+	 */
+	public String resolve(MessageSourceResolvable resolvable, Locale locale) {
+		Locale effectiveLocale = locale != null ? locale : Locale.getDefault();
+		MessageKey key = new MessageKey(resolvable, effectiveLocale);
+		String cached = cache.get(key);
+		if (cached != null) {
+			hits.increment();
+			return cached;
+		}
+		misses.increment();
+		String resolved = doResolve(resolvable, effectiveLocale);
+		if (resolved != null) {
+			put(key, resolved);
+		}
+		return resolved;
+	}
+
+	private synchronized void put(MessageKey key, String message) {
+		if (cache.putIfAbsent(key, message) != null) {
+			return;
+		}
+		insertionOrder.offer(key);
+		while (cache.size() > maxSize) {
+			cache.remove(insertionOrder.poll());
+			evictions.increment();
+		}
+	}
+
+	/**
+	 * Convenience method to supply to {@link BindError} constructors.
+	 */
+	public Supplier<String> resolverFor(MessageSourceResolvable resolvable, Locale locale) {
+		return () -> resolve(resolvable, locale);
+	}
+
+	private String doResolve(MessageSourceResolvable resolvable, Locale locale) {
+		try {
+			return messageSource.getMessage(resolvable, locale);
+		} catch (NoSuchMessageException e) {
+			log.debug("No message found for codes {}", Arrays.toString(resolvable.getCodes()));
+			return resolvable.getDefaultMessage();
+		}
+	}
+
+	/**
+	 * Removes all cached messages, e.g. after reloading message bundles. Statistics are retained.
+	 */
+	public synchronized void clear() {
+		cache.clear();
+		insertionOrder.clear();
+	}
+
+	public int size() {
+		return cache.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getHitCount() {
+		return hits.sum();
+	}
+
+	public long getMissCount() {
+		return misses.sum();
+	}
+
+	public long getEvictionCount() {
+		return evictions.sum();
+	}
+
+	/**
+	 * @return proportion of lookups served from the cache, or 0 if no lookups have been made
+	 */
+	public double getHitRate() {
+		long h = hits.sum();
+		long total = h + misses.sum();
+		return total == 0 ? 0 : (double) h / total;
+	}
+
+	private static final class MessageKey {
+		private final String[] codes;
+		private final Object[] arguments;
+		private final String defaultMessage;
+		private final Locale locale;
+		private final int hash;
+
+		MessageKey(MessageSourceResolvable resolvable, Locale locale) {
+			this.codes = resolvable.getCodes();
+			this.arguments = normalise(resolvable.getArguments());
+			this.defaultMessage = resolvable.getDefaultMessage();
+			this.locale = locale;
+			int h = Arrays.hashCode(codes);
+			h = 31 * h + Arrays.deepHashCode(arguments);
+			h = 31 * h + Objects.hashCode(defaultMessage);
+			this.hash = 31 * h + locale.hashCode();
+		}
+
+		/**
+		 * Replaces MessageSourceResolvable arguments by their codes and default message, as not all implementations
+		 * define equals (e.g. the wrapper Spring's SpringValidatorAdapter uses for String constraint attributes such
+		 * as <code>@Pattern.regexp</code>), which would make each such error a cache miss.
+		 */
+		private static Object[] normalise(Object[] arguments) {
+			if (arguments == null) {
+				return null;
+			}
+			Object[] normalised = new Object[arguments.length];
+			for (int i = 0; i < arguments.length; i++) {
+				Object argument = arguments[i];
+				if (argument instanceof MessageSourceResolvable) {
+					MessageSourceResolvable resolvable = (MessageSourceResolvable) argument;
+					String[] codes = resolvable.getCodes();
+					normalised[i] = Arrays.asList(codes == null ? null : Arrays.asList(codes),
+							resolvable.getDefaultMessage());
+				} else {
+					normalised[i] = argument;
+				}
+			}
+			return normalised;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof MessageKey)) {
+				return false;
+			}
+			MessageKey other = (MessageKey) o;
+			return hash == other.hash && locale.equals(other.locale) && Arrays.equals(codes, other.codes)
+					&& Arrays.deepEquals(arguments, other.arguments)
+					&& Objects.equals(defaultMessage, other.defaultMessage);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+	}
+
+}
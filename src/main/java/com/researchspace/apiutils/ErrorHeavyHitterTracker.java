@@ -0,0 +1,114 @@
+package com.researchspace.apiutils;
+
+import java.security.Principal;
+import java.util.List;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.researchspace.apiutils.HeavyHitters.HeavyHitter;
+
+import lombok.Value;
+
+/**
+ * Tracks which clients, endpoints and error codes produce the most ApiErrors, in fixed memory and without locking,
+ * so it can stay enabled under full load.<br>
+ * Clients are identified by the authenticated principal's name or, failing that, an abbreviated 'apiKey' header
+ * (the full key is never stored). Endpoints are identified by the matched request-mapping pattern, e.g.
+ * <code>/api/v1/documents/{id}</code>, falling back to the request URI if no handler matched.
+ * <br>
+ * Use from a <code>RestControllerAdvice</code> subclass by overriding
+ * {@link RestControllerAdvice#getErrorTracker()}.
+ */
+public class ErrorHeavyHitterTracker {
+
+	public static final int DEFAULT_TOP_K = 10;
+	public static final int DEFAULT_SKETCH_WIDTH = 1024;
+	static final String UNKNOWN = "unknown";
+	static final int API_KEY_PREFIX_LENGTH = 4;
+
+	/**
+	 * Heaviest offenders at the time of the snapshot, highest count first
+	 */
+	@Value
+	public static class Snapshot {
+		List<HeavyHitter> clients;
+		List<HeavyHitter> paths;
+		List<HeavyHitter> errorCodes;
+	}
+
+	private final HeavyHitters clients;
+	private final HeavyHitters paths;
+	private final HeavyHitters errorCodes;
+
+	public ErrorHeavyHitterTracker() {
+		this(DEFAULT_TOP_K, DEFAULT_SKETCH_WIDTH);
+	}
+
+	/**
+	 * @param topK        number of heaviest offenders to report in each category
+	 * @param sketchWidth accuracy of counts, see {@link HeavyHitters#HeavyHitters(int, int)}
+	 */
+	public ErrorHeavyHitterTracker(int topK, int sketchWidth) {
+		clients = new HeavyHitters(topK, sketchWidth);
+		paths = new HeavyHitters(topK, sketchWidth);
+		errorCodes = new HeavyHitters(topK, sketchWidth);
+	}
+
+	/**
+	 * Records an error response for the request
+	 */
+	public void record(ApiError apiError, WebRequest request) {
+		clients.record(clientKey(request));
+		paths.record(pathKey(request));
+		ApiErrorCodes code = ApiErrorCodes.fromCode(apiError.getInternalCode());
+		errorCodes.record(code != null ? code.name() : Integer.toString(apiError.getInternalCode()));
+	}
+
+	public Snapshot snapshot() {
+		return new Snapshot(clients.top(), paths.top(), errorCodes.top());
+	}
+
+	/**
+	 * Clears all counts, e.g. periodically so that snapshots reflect recent errors
+	 */
+	public void reset() {
+		clients.reset();
+		paths.reset();
+		errorCodes.reset();
+	}
+
+	private String clientKey(WebRequest request) {
+		Principal principal = request.getUserPrincipal();
+		if (principal != null) {
+			return "user:" + principal.getName();
+		}
+		String apiKey = request.getHeader("apiKey");
+		if (apiKey != null) {
+			String prefix = apiKey.length() > API_KEY_PREFIX_LENGTH ? apiKey.substring(0, API_KEY_PREFIX_LENGTH)
+					: apiKey;
+			return "apiKey:" + prefix + "...#" + Integer.toHexString(apiKey.hashCode());
+		}
+		return UNKNOWN;
+	}
+
+	private String pathKey(WebRequest request) {
+		Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE,
+				RequestAttributes.SCOPE_REQUEST);
+		if (pattern != null) {
+			return pattern.toString();
+		}
+		if (request instanceof NativeWebRequest) {
+			HttpServletRequest servletRequest = ((NativeWebRequest) request).getNativeRequest(HttpServletRequest.class);
+			if (servletRequest != null) {
+				return servletRequest.getRequestURI();
+			}
+		}
+		return UNKNOWN;
+	}
+
+}
@@ -0,0 +1,42 @@
+package com.researchspace.apiutils;
+
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.http.HttpStatus;
+
+import lombok.Value;
+
+/**
+ * Describes how an exception type is converted to an ApiError. See {@link ExceptionMappingRegistry}.
+ *
+ * @param <T> the exception type
+ */
+@Value
+public class ExceptionMapping<T extends Throwable> {
+
+	Class<T> exceptionType;
+	HttpStatus status;
+	ApiErrorCodes code;
+	/**
+	 * Produces the ApiError's message
+	 */
+	Function<? super T, String> messageExtractor;
+	/**
+	 * Produces the ApiError's errors list
+	 */
+	Function<? super T, List<String>> errorsExtractor;
+	/**
+	 * Whether to log the exception's stack trace when handled
+	 */
+	boolean logStackTrace;
+
+	/**
+	 * @param ex an instance of <code>exceptionType</code>
+	 */
+	public ApiError toApiError(Throwable ex) {
+		T typed = exceptionType.cast(ex);
+		return new ApiError(status, code.getCode(), messageExtractor.apply(typed), errorsExtractor.apply(typed));
+	}
+
+}
@@ -0,0 +1,118 @@
+package com.researchspace.apiutils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.method.annotation.MethodArgumentConversionNotSupportedException;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+
+/**
+ * Declarative exception type to ApiError mappings, used by {@link RestControllerAdvice#handleAll}.<br>
+ * An exception is mapped by the rule registered for its own class or, failing that, its nearest superclass.
+ * The rule for each concrete exception class is looked up once and memoized, so handling an exception is a
+ * single lookup. Registering a rule clears memoized lookups, so rules should be registered at startup.
+ * <br>
+ * Projects add or replace rules, e.g. in their <code>RestControllerAdvice</code> subclass constructor:
+ * 
+ * <pre>
+ * getExceptionMappings().register(NotFoundException.class, HttpStatus.NOT_FOUND, ApiErrorCodes.RESOURCE_NOT_FOUND,
+ * 		NotFoundException::getMessage);
+ * </pre>
+ */
+public class ExceptionMappingRegistry {
+
+	private final Map<Class<?>, ExceptionMapping<?>> mappings = new ConcurrentHashMap<>();
+	private volatile ClassValue<Optional<ExceptionMapping<?>>> resolved = newResolver();
+
+	/**
+	 * @return a registry containing the mappings built in to {@link RestControllerAdvice}
+	 */
+	public static ExceptionMappingRegistry withDefaults() {
+		ExceptionMappingRegistry registry = new ExceptionMappingRegistry();
+		// 400
+		registry.register(MethodArgumentTypeMismatchException.class, HttpStatus.BAD_REQUEST,
+				ApiErrorCodes.METHOD_MISMATCH,
+				ex -> ex.getName() + " should be of type " + ex.getRequiredType().getName());
+		registry.register(new ExceptionMapping<>(ConstraintViolationException.class, HttpStatus.BAD_REQUEST,
+				ApiErrorCodes.CONSTRAINT_VIOLATION, Throwable::getLocalizedMessage,
+				ExceptionMappingRegistry::constraintViolations, false));
+		// 422
+		registry.register(new ExceptionMapping<>(IllegalArgumentException.class, HttpStatus.UNPROCESSABLE_ENTITY,
+				ApiErrorCodes.ILLEGAL_ARGUMENT, Throwable::getLocalizedMessage,
+				ex -> Collections.singletonList(ex.getMessage()), true));
+		// 500
+		registry.register(IOException.class, HttpStatus.INTERNAL_SERVER_ERROR, ApiErrorCodes.IO, ex -> "I/O error");
+		registry.register(MethodArgumentConversionNotSupportedException.class, HttpStatus.INTERNAL_SERVER_ERROR,
+				ApiErrorCodes.INTERNAL_ARGUMENT_CONVERSION, ex -> "Error converting argument");
+		registry.register(Exception.class, HttpStatus.INTERNAL_SERVER_ERROR, ApiErrorCodes.GENERAL_ERROR,
+				ex -> "General server error");
+		return registry;
+	}
+
+	private static List<String> constraintViolations(ConstraintViolationException ex) {
+		final List<String> errors = new ArrayList<>();
+		for (final ConstraintViolation<?> violation : ex.getConstraintViolations()) {
+			errors.add(violation.getRootBeanClass().getName() + " " + violation.getPropertyPath() + ": "
+					+ violation.getMessage());
+		}
+		return errors;
+	}
+
+	/**
+	 * Registers a mapping whose ApiError message is the exception's localized message, with a single error.
+	 * Stack traces are logged for 5xx statuses.
+	 *
+	 * @param errorExtractor produces the ApiError's error
+	 * @return this registry
+	 */
+	public <T extends Throwable> ExceptionMappingRegistry register(Class<T> exceptionType, HttpStatus status,
+			ApiErrorCodes code, Function<? super T, String> errorExtractor) {
+		return register(new ExceptionMapping<T>(exceptionType, status, code, Throwable::getLocalizedMessage,
+				ex -> Collections.singletonList(errorExtractor.apply(ex)), status.is5xxServerError()));
+	}
+
+	/**
+	 * Registers a mapping, replacing any existing mapping for the same exception type.
+	 *
+	 * @return this registry
+	 */
+	public ExceptionMappingRegistry register(ExceptionMapping<?> mapping) {
+		mappings.put(mapping.getExceptionType(), mapping);
+		resolved = newResolver();
+		return this;
+	}
+
+	/**
+	 * @return the mapping for the exception class or its nearest mapped superclass, or <code>null</code>
+	 *         if there is none
+	 */
+	public ExceptionMapping<?> resolve(Class<? extends Throwable> exceptionClass) {
+		return resolved.get(exceptionClass).orElse(null);
+	}
+
+	private ClassValue<Optional<ExceptionMapping<?>>> newResolver() {
+		return new ClassValue<Optional<ExceptionMapping<?>>>() {
+			@Override
+			protected Optional<ExceptionMapping<?>> computeValue(Class<?> type) {
+				for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+					ExceptionMapping<?> mapping = mappings.get(current);
+					if (mapping != null) {
+						return Optional.of(mapping);
+					}
+				}
+				return Optional.empty();
+			}
+		};
+	}
+
+}
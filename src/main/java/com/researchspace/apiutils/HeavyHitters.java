@@ -0,0 +1,147 @@
+package com.researchspace.apiutils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import lombok.Value;
+
+/**
+ * Fixed-memory, lock-free approximate top-K counter.<br>
+ * Occurrences are counted in a count-min sketch, which never underestimates a key's count and overestimates it
+ * by at most a small fraction of the total. The <code>k</code> keys with the highest estimates are kept as
+ * candidates, replaced by compare-and-set, so heavy keys are reported even among an unbounded number of distinct
+ * keys.
+ */
+public class HeavyHitters {
+
+	/**
+	 * A key and its estimated count
+	 */
+	@Value
+	public static class HeavyHitter {
+		String key;
+		long estimatedCount;
+	}
+
+	static final int DEPTH = 4;
+	private static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+
+	private final int widthMask;
+	private final AtomicLongArray counts;
+	private final AtomicReferenceArray<HeavyHitter> candidates;
+
+	/**
+	 * @param k     number of heaviest keys to track
+	 * @param width columns per sketch row, a power of 2. Larger widths give more accurate estimates; memory used is
+	 *              <code>4 * width</code> longs.
+	 */
+	public HeavyHitters(int k, int width) {
+		if (k <= 0) {
+			throw new IllegalArgumentException("k must be > 0 but was " + k);
+		}
+		if (width <= 0 || Integer.bitCount(width) != 1) {
+			throw new IllegalArgumentException("width must be a power of 2 but was " + width);
+		}
+		this.widthMask = width - 1;
+		this.counts = new AtomicLongArray(DEPTH * width);
+		this.candidates = new AtomicReferenceArray<>(k);
+	}
+
+	/**
+	 * Counts one occurrence of the key
+	 */
+	public void record(String key) {
+		int hash = key.hashCode();
+		long estimate = Long.MAX_VALUE;
+		for (int row = 0; row < DEPTH; row++) {
+			estimate = Math.min(estimate, counts.incrementAndGet(index(row, hash)));
+		}
+		updateCandidates(key, estimate);
+	}
+
+	private void updateCandidates(String key, long estimate) {
+		int emptyIndex = -1;
+		int minIndex = -1;
+		HeavyHitter min = null;
+		for (int i = 0; i < candidates.length(); i++) {
+			HeavyHitter candidate = candidates.get(i);
+			if (candidate == null) {
+				if (emptyIndex == -1) {
+					emptyIndex = i;
+				}
+			} else if (candidate.getKey().equals(key)) {
+				if (candidate.getEstimatedCount() < estimate) {
+					candidates.compareAndSet(i, candidate, new HeavyHitter(key, estimate));
+				}
+				return;
+			} else if (min == null || candidate.getEstimatedCount() < min.getEstimatedCount()) {
+				minIndex = i;
+				min = candidate;
+			}
+		}
+		// a lost race just means this occurrence doesn't change the candidates
+		if (emptyIndex != -1) {
+			candidates.compareAndSet(emptyIndex, null, new HeavyHitter(key, estimate));
+		} else if (estimate > min.getEstimatedCount()) {
+			candidates.compareAndSet(minIndex, min, new HeavyHitter(key, estimate));
+		}
+	}
+
+	/**
+	 * @return the estimated number of occurrences of the key
+	 */
+	public long estimate(String key) {
+		int hash = key.hashCode();
+		long estimate = Long.MAX_VALUE;
+		for (int row = 0; row < DEPTH; row++) {
+			estimate = Math.min(estimate, counts.get(index(row, hash)));
+		}
+		return estimate;
+	}
+
+	/**
+	 * @return the heaviest keys, highest count first
+	 */
+	public List<HeavyHitter> top() {
+		Map<String, HeavyHitter> byKey = new HashMap<>();
+		for (int i = 0; i < candidates.length(); i++) {
+			HeavyHitter candidate = candidates.get(i);
+			if (candidate != null) {
+				byKey.putIfAbsent(candidate.getKey(), new HeavyHitter(candidate.getKey(), estimate(candidate.getKey())));
+			}
+		}
+		List<HeavyHitter> top = new ArrayList<>(byKey.values());
+		top.sort(Comparator.comparingLong(HeavyHitter::getEstimatedCount).reversed());
+		return top;
+	}
+
+	/**
+	 * Clears all counts, e.g. periodically so that {@link #top()} reflects recent occurrences.
+	 * Occurrences recorded concurrently with a reset may be partially retained.
+	 */
+	public void reset() {
+		for (int i = 0; i < candidates.length(); i++) {
+			candidates.set(i, null);
+		}
+		for (int i = 0; i < counts.length(); i++) {
+			counts.set(i, 0);
+		}
+	}
+
+	private int index(int row, int hash) {
+		int h = hash ^ SEEDS[row];
+		// murmur3 finalizer
+		h ^= h >>> 16;
+		h *= 0x85EBCA6B;
+		h ^= h >>> 13;
+		h *= 0xC2B2AE35;
+		h ^= h >>> 16;
+		return row * (widthMask + 1) + (h & widthMask);
+	}
+
+}
@@ -0,0 +1,440 @@
+package com.researchspace.apiutils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.researchspace.core.util.JacksonUtil;
+
+/**
+ * Sheds load by rejecting requests immediately, rather than queueing them, when a client or route is
+ * over its limits:
+ * <ul>
+ * <li>if the number of in-flight requests for the key reaches <code>maxConcurrentRequests</code>, the response is
+ * an ApiError with status 503 and code {@link ApiErrorCodes#CONFIGURED_UNAVAILABLE}
+ * <li>if rate limiting is enabled and the key has exceeded <code>permitsPerSecond</code> (allowing bursts of up to
+ * <code>burst</code> requests), the response is an ApiError with status 429 and code
+ * {@link ApiErrorCodes#TOOMANY_REQUESTS}
+ * </ul>
+ * Both responses include a <code>Retry-After</code> header. Admission checks are lock-free; the rejection body is
+ * serialized at most once per second.<br>
+ * Requests are grouped by a key extracted from the request, by default the route ({@link #BY_ROUTE}).
+ * Keys that have had no requests for <code>keyIdleTimeout</code>, and whose rate limit has fully recovered, are
+ * discarded when <code>maxTrackedKeys</code> is reached. If all tracked keys are active, requests with a new key
+ * share a single overflow set of limits, the same size as one key's, so a spike of distinct keys is still shed
+ * without affecting the limits of tracked keys; {@link #getUntrackedCount()} counts such requests.<br>
+ * For asynchronous requests the concurrency slot is held until the async request completes, errors or
+ * times out.
+ */
+public class LoadSheddingFilter extends OncePerRequestFilter {
+
+	public static final int DEFAULT_MAX_TRACKED_KEYS = 10_000;
+	public static final Duration DEFAULT_KEY_IDLE_TIMEOUT = Duration.ofMinutes(1);
+	static final String ROUTE_PREFIX = "route:";
+	static final String API_KEY_PREFIX = "apiKey:";
+
+	private static final Pattern ID_SEGMENT = Pattern.compile(
+			"\\d+|[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}|[A-Z]{2}\\d+(v\\d+)?");
+
+	/**
+	 * Replaces path segments that look like identifiers (numbers, UUIDs and global IDs such as 'SD123') with
+	 * <code>{id}</code>, so that e.g. <code>/api/v1/documents/123</code> becomes
+	 * <code>/api/v1/documents/{id}</code>
+	 */
+	public static final Function<String, String> DEFAULT_PATH_NORMALISER = path -> {
+		String[] segments = path.split("/", -1);
+		for (int i = 0; i < segments.length; i++) {
+			if (ID_SEGMENT.matcher(segments[i]).matches()) {
+				segments[i] = "{id}";
+			}
+		}
+		return String.join("/", segments);
+	};
+
+	/**
+	 * Groups requests by route template: the matched handler mapping pattern if already known, else the request
+	 * path within the application normalised by {@link #DEFAULT_PATH_NORMALISER}
+	 */
+	public static final Function<HttpServletRequest, String> BY_ROUTE = byRoute(DEFAULT_PATH_NORMALISER);
+
+	/**
+	 * Groups requests by their 'apiKey' header, or by route if there is no API key. API keys are hashed, so
+	 * credentials aren't retained, and prefixed differently from routes, so an API key can't share a route's limits.
+	 */
+	public static final Function<HttpServletRequest, String> BY_API_KEY = request -> {
+		String apiKey = request.getHeader("apiKey");
+		return apiKey != null ? API_KEY_PREFIX + hash(apiKey) : BY_ROUTE.apply(request);
+	};
+
+	/**
+	 * Groups requests by route template, using the matched handler mapping pattern if already known (e.g. if this
+	 * filter runs after handler mapping), else the request path within the application converted to a template
+	 * by <code>pathNormaliser</code>. Keys are prefixed with <code>route:</code>.
+	 * 
+	 * @param pathNormaliser maps a request path to its route template, e.g. by replacing identifiers
+	 */
+	public static Function<HttpServletRequest, String> byRoute(Function<String, String> pathNormaliser) {
+		return request -> {
+			Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+			if (pattern instanceof String) {
+				return ROUTE_PREFIX + pattern;
+			}
+			return ROUTE_PREFIX
+					+ pathNormaliser.apply(request.getRequestURI().substring(request.getContextPath().length()));
+		};
+	}
+
+	/**
+	 * @return the first 128 bits of the value's SHA-256 digest, Base64-encoded
+	 */
+	static String hash(String value) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.UTF_8));
+			return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 16));
+		} catch (NoSuchAlgorithmException e) {
+			// every JVM must support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private final int maxConcurrentRequests;
+	private final long emissionIntervalNanos;
+	private final long burstToleranceNanos;
+	private final int maxTrackedKeys;
+	private final long keyIdleTimeoutNanos;
+	private final AtomicLong nextIdleSweepNanos = new AtomicLong(System.nanoTime());
+	private final Function<HttpServletRequest, String> keyExtractor;
+	private final ConcurrentMap<String, Limits> limitsByKey = new ConcurrentHashMap<>();
+	// shared by keys that can't be tracked because maxTrackedKeys active keys are already tracked
+	private final Limits overflowLimits = new Limits();
+
+	private final LongAdder admitted = new LongAdder();
+	private final LongAdder rejectedConcurrency = new LongAdder();
+	private final LongAdder rejectedRate = new LongAdder();
+	private final LongAdder untracked = new LongAdder();
+
+	private final CachedErrorBody unavailableBody = new CachedErrorBody(HttpStatus.SERVICE_UNAVAILABLE,
+			ApiErrorCodes.CONFIGURED_UNAVAILABLE, "Service is at capacity, please retry later");
+	private final CachedErrorBody tooManyRequestsBody = new CachedErrorBody(HttpStatus.TOO_MANY_REQUESTS,
+			ApiErrorCodes.TOOMANY_REQUESTS, "Request rate limit exceeded, please retry later");
+
+	/**
+	 * Concurrency limit per route, without rate limiting
+	 */
+	public LoadSheddingFilter(int maxConcurrentRequests) {
+		this(maxConcurrentRequests, 0, 1, BY_ROUTE, DEFAULT_MAX_TRACKED_KEYS);
+	}
+
+	/**
+	 * @param maxConcurrentRequests maximum in-flight requests per key
+	 * @param permitsPerSecond      sustained request rate allowed per key; 0 disables rate limiting
+	 * @param burst                 number of requests per key that may exceed the sustained rate in a burst, &gt;= 1
+	 * @param keyExtractor          groups requests, e.g. {@link #BY_ROUTE} or {@link #BY_API_KEY}
+	 * @param maxTrackedKeys        maximum number of keys tracked separately
+	 */
+	public LoadSheddingFilter(int maxConcurrentRequests, double permitsPerSecond, int burst,
+			Function<HttpServletRequest, String> keyExtractor, int maxTrackedKeys) {
+		this(maxConcurrentRequests, permitsPerSecond, burst, keyExtractor, maxTrackedKeys, DEFAULT_KEY_IDLE_TIMEOUT);
+	}
+
+	/**
+	 * @param maxConcurrentRequests maximum in-flight requests per key
+	 * @param permitsPerSecond      sustained request rate allowed per key; 0 disables rate limiting
+	 * @param burst                 number of requests per key that may exceed the sustained rate in a burst, &gt;= 1
+	 * @param keyExtractor          groups requests, e.g. {@link #BY_ROUTE} or {@link #BY_API_KEY}
+	 * @param maxTrackedKeys        maximum number of keys tracked separately
+	 * @param keyIdleTimeout        how long a key must be unused before it can be discarded to track a new key
+	 */
+	public LoadSheddingFilter(int maxConcurrentRequests, double permitsPerSecond, int burst,
+			Function<HttpServletRequest, String> keyExtractor, int maxTrackedKeys, Duration keyIdleTimeout) {
+		if (maxConcurrentRequests <= 0) {
+			throw new IllegalArgumentException("maxConcurrentRequests must be > 0 but was " + maxConcurrentRequests);
+		}
+		if (permitsPerSecond < 0 || burst < 1) {
+			throw new IllegalArgumentException("permitsPerSecond must be >= 0 and burst >= 1");
+		}
+		this.maxConcurrentRequests = maxConcurrentRequests;
+		this.emissionIntervalNanos = permitsPerSecond == 0 ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+		this.burstToleranceNanos = emissionIntervalNanos * (burst - 1);
+		this.keyExtractor = keyExtractor;
+		this.maxTrackedKeys = maxTrackedKeys;
+		this.keyIdleTimeoutNanos = keyIdleTimeout.toNanos();
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+		Limits limits = getLimits(keyExtractor.apply(request));
+		if (!limits.tryAcquireConcurrency()) {
+			rejectedConcurrency.increment();
+			reject(response, unavailableBody, 1);
+			return;
+		}
+		ConcurrencyPermit permit = new ConcurrencyPermit(limits);
+		boolean releaseOnReturn = true;
+		try {
+			long waitNanos = limits.tryAcquireRate();
+			if (waitNanos > 0) {
+				rejectedRate.increment();
+				reject(response, tooManyRequestsBody, TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1);
+				return;
+			}
+			admitted.increment();
+			filterChain.doFilter(request, response);
+			if (request.isAsyncStarted()) {
+				request.getAsyncContext().addListener(permit);
+				releaseOnReturn = false;
+			}
+		} finally {
+			if (releaseOnReturn) {
+				permit.release();
+			}
+		}
+	}
+
+	/**
+	 * @return the key's limits, or the overflow limits if the key can't be tracked because all tracked keys are in use
+	 */
+	private Limits getLimits(String key) {
+		Limits limits = limitsByKey.get(key);
+		if (limits == null) {
+			if (limitsByKey.size() >= maxTrackedKeys && !removeIdleKeys()) {
+				untracked.increment();
+				return overflowLimits;
+			}
+			limits = limitsByKey.computeIfAbsent(key, k -> new Limits());
+		}
+		limits.lastUsedNanos = System.nanoTime();
+		return limits;
+	}
+
+	/**
+	 * Removes keys unused for the idle timeout, scanning at most once per timeout.
+	 * 
+	 * @return whether there is now room to track another key
+	 */
+	private boolean removeIdleKeys() {
+		long now = System.nanoTime();
+		long nextSweep = nextIdleSweepNanos.get();
+		if (now - nextSweep >= 0 && nextIdleSweepNanos.compareAndSet(nextSweep, now + keyIdleTimeoutNanos)) {
+			Iterator<Limits> it = limitsByKey.values().iterator();
+			while (it.hasNext()) {
+				if (it.next().isIdle(now)) {
+					it.remove();
+				}
+			}
+		}
+		return limitsByKey.size() < maxTrackedKeys;
+	}
+
+	private void reject(HttpServletResponse response, CachedErrorBody body, long retryAfterSeconds)
+			throws IOException {
+		byte[] bytes = body.get();
+		response.setStatus(body.status.value());
+		response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+		response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+		response.setContentLength(bytes.length);
+		response.getOutputStream().write(bytes);
+	}
+
+	public long getAdmittedCount() {
+		return admitted.sum();
+	}
+
+	/**
+	 * @return number of requests rejected with 503 because too many were in flight
+	 */
+	public long getRejectedConcurrencyCount() {
+		return rejectedConcurrency.sum();
+	}
+
+	/**
+	 * @return number of requests rejected with 429 because the rate limit was exceeded
+	 */
+	public long getRejectedRateCount() {
+		return rejectedRate.sum();
+	}
+
+	/**
+	 * @return number of requests subject to the overflow limits because <code>maxTrackedKeys</code> active keys were
+	 *         already tracked
+	 */
+	public long getUntrackedCount() {
+		return untracked.sum();
+	}
+
+	public int getTrackedKeyCount() {
+		return limitsByKey.size();
+	}
+
+	/**
+	 * @param key a key as returned by the key extractor, e.g. <code>route:/api/v1/documents/{id}</code>
+	 * @return number of requests currently in flight for the key, or 0 if the key isn't tracked
+	 */
+	public int getInFlight(String key) {
+		Limits limits = limitsByKey.get(key);
+		return limits == null ? 0 : limits.inFlight.get();
+	}
+
+	/**
+	 * Concurrency and rate limits for a single key.<br>
+	 * The rate limit is a token bucket implemented as the generic cell rate algorithm, holding only the theoretical
+	 * arrival time of the next request, so it can be updated with a single CAS.
+	 */
+	private class Limits {
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicLong theoreticalArrivalNanos = new AtomicLong(System.nanoTime());
+		volatile long lastUsedNanos = System.nanoTime();
+
+		boolean tryAcquireConcurrency() {
+			int current;
+			do {
+				current = inFlight.get();
+				if (current >= maxConcurrentRequests) {
+					return false;
+				}
+			} while (!inFlight.compareAndSet(current, current + 1));
+			return true;
+		}
+
+		void releaseConcurrency() {
+			inFlight.decrementAndGet();
+		}
+
+		/**
+		 * Idle keys can be discarded without affecting their limits: nothing in flight, not used within the idle
+		 * timeout, and a full token bucket
+		 */
+		boolean isIdle(long now) {
+			return inFlight.get() == 0 && now - lastUsedNanos >= keyIdleTimeoutNanos
+					&& now - theoreticalArrivalNanos.get() >= 0;
+		}
+
+		/**
+		 * @return 0 if a request is permitted now, else nanos until one will be
+		 */
+		long tryAcquireRate() {
+			if (emissionIntervalNanos == 0) {
+				return 0;
+			}
+			long now = System.nanoTime();
+			long tat;
+			long newTat;
+			do {
+				tat = theoreticalArrivalNanos.get();
+				long earliest = tat - burstToleranceNanos;
+				if (now - earliest < 0) {
+					return earliest - now;
+				}
+				newTat = Math.max(tat - now, 0) + now + emissionIntervalNanos;
+			} while (!theoreticalArrivalNanos.compareAndSet(tat, newTat));
+			return 0;
+		}
+	}
+
+	/**
+	 * A concurrency slot, released exactly once: when the filter chain returns, or for async requests when the
+	 * async request completes, errors or times out
+	 */
+	private static class ConcurrencyPermit implements AsyncListener {
+		private final Limits limits;
+		private final AtomicBoolean released = new AtomicBoolean();
+
+		ConcurrencyPermit(Limits limits) {
+			this.limits = limits;
+		}
+
+		void release() {
+			if (released.compareAndSet(false, true)) {
+				limits.releaseConcurrency();
+			}
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) {
+			release();
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) {
+			release();
+		}
+
+		@Override
+		public void onError(AsyncEvent event) {
+			release();
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) {
+			// listeners are removed when async processing restarts
+			event.getAsyncContext().addListener(this);
+		}
+	}
+
+	/**
+	 * Serialized ApiError, regenerated at most once per second so its timestamp stays accurate
+	 */
+	private static class CachedErrorBody {
+		final HttpStatus status;
+		final ApiErrorCodes code;
+		final String message;
+		volatile SerializedBody current = new SerializedBody(Long.MIN_VALUE, null);
+
+		CachedErrorBody(HttpStatus status, ApiErrorCodes code, String message) {
+			this.status = status;
+			this.code = code;
+			this.message = message;
+		}
+
+		byte[] get() {
+			long second = Instant.now().getEpochSecond();
+			SerializedBody body = current;
+			if (body.epochSecond != second) {
+				ApiError error = new ApiError(status, code.getCode(), message, status.getReasonPhrase());
+				body = new SerializedBody(second, JacksonUtil.toJson(error).getBytes(StandardCharsets.UTF_8));
+				current = body;
+			}
+			return body.bytes;
+		}
+	}
+
+	private static class SerializedBody {
+		final long epochSecond;
+		final byte[] bytes;
+
+		SerializedBody(long epochSecond, byte[] bytes) {
+			this.epochSecond = epochSecond;
+			this.bytes = bytes;
+		}
+	}
+
+}
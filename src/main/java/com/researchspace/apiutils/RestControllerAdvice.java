@@ -4,7 +4,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import javax.validation.ConstraintViolation;
 import javax.validation.ConstraintViolationException;
 
 import org.springframework.beans.TypeMismatchException;
@@ -54,10 +53,15 @@ import lombok.extern.slf4j.Slf4j;
  * <tr> <td>o.s.web.method.annotation.MethodArgumentConversionNotSupportedException</td><td>INTERNAL_SERVER_ERROR</td><th>500</td></tr>
  * <tr> <td>java.lang.Exception</td><td>INTERNAL_SERVER_ERROR</td><th>500</td></tr>
  *  </table>
+ * Mappings for exceptions other than Spring MVC exceptions are defined in an {@link ExceptionMappingRegistry},
+ * to which projects can add their own mappings instead of writing additional handler methods.
  * 
  */
 @Slf4j
 public abstract class RestControllerAdvice extends ResponseEntityExceptionHandler {
+
+	private final ExceptionMappingRegistry exceptionMappings = ExceptionMappingRegistry.withDefaults();
+
 	// 400
 	@Override
 	protected ResponseEntity<Object> handleMethodArgumentNotValid(final MethodArgumentNotValidException ex,
@@ -65,13 +69,14 @@ public abstract class RestControllerAdvice extends ResponseEntityExceptionHandle
 		logException(ex);
 		final List<String> errors = new ArrayList<>();
 		for (final FieldError error : ex.getBindingResult().getFieldErrors()) {
-			errors.add(error.getField() + ": " + error.getDefaultMessage());
+			errors.add(error.getField() + ": " + resolveMessage(error, request));
 		}
 		for (final ObjectError error : ex.getBindingResult().getGlobalErrors()) {
-			errors.add(error.getObjectName() + ": " + error.getDefaultMessage());
+			errors.add(error.getObjectName() + ": " + resolveMessage(error, request));
 		}
 		final ApiError apiError = new ApiError(HttpStatus.BAD_REQUEST, ApiErrorCodes.INVALID_METHOD_ARGUMENT.getCode(),
 				ex.getLocalizedMessage(), errors);
+		recordError(apiError, request);
 		return handleExceptionInternal(ex, apiError, headers, apiError.getStatus(), request);
 	}
 
@@ -84,18 +89,21 @@ public abstract class RestControllerAdvice extends ResponseEntityExceptionHandle
 		final List<String> errors = new ArrayList<>();
 		List<BindError> bindErrors = new ArrayList<>();
 		for (final FieldError error : ex.getBindingResult().getFieldErrors()) {
-			errors.add(error.getField() + ": " + error.getDefaultMessage());
-			bindErrors.add(new BindError(error));	
+			final String message = resolveMessage(error, request);
+			errors.add(error.getField() + ": " + message);
+			bindErrors.add(new BindError(error, () -> message));
 		}
 
 		for (final ObjectError error : ex.getBindingResult().getGlobalErrors()) {
-			errors.add(error.getObjectName() + ": " + error.getDefaultMessage());
-			bindErrors.add(new BindError(error));
+			final String message = resolveMessage(error, request);
+			errors.add(error.getObjectName() + ": " + message);
+			bindErrors.add(new BindError(error, () -> message));
 		}
 		BindErrorList errorList = new BindErrorList(bindErrors);
 
 		final ApiError apiError = new ApiError(HttpStatus.BAD_REQUEST, ApiErrorCodes.INVALID_FIELD.getCode(),
 				"Errors detected : " + ex.getErrorCount(), errors, errorList);
+		recordError(apiError, request);
 		return handleExceptionInternal(ex, apiError, headers, apiError.getStatus(), request);
 	}
 
@@ -109,16 +117,18 @@ public abstract class RestControllerAdvice extends ResponseEntityExceptionHandle
 				+ ex.getRequiredType();
 		final ApiError apiError = new ApiError(HttpStatus.BAD_REQUEST, ApiErrorCodes.TYPE_MISMATCH.getCode(),
 				ex.getLocalizedMessage(), error);
+		recordError(apiError, request);
 		return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
 	}
 
 	@Override
 	protected ResponseEntity<Object> handleMissingServletRequestPart(final MissingServletRequestPartException ex,
 			final HttpHeaders headers, final HttpStatus status, final WebRequest request) {
-		log.info(ex.getClass().getName());
+		logException(ex);
 		final String error = ex.getRequestPartName() + " part is missing";
 		final ApiError apiError = new ApiError(HttpStatus.BAD_REQUEST, ApiErrorCodes.MISSING_MULTIPART.getCode(),
 				ex.getLocalizedMessage(), error);
+		recordError(apiError, request);
 		return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
 	}
 
@@ -130,31 +140,7 @@ public abstract class RestControllerAdvice extends ResponseEntityExceptionHandle
 		final String error = ex.getParameterName() + " parameter is missing";
 		final ApiError apiError = new ApiError(HttpStatus.BAD_REQUEST, ApiErrorCodes.MISSING_REQ_PARAMETER.getCode(),
 				ex.getLocalizedMessage(), error);
-		return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
-	}
-
-	@ExceptionHandler({ MethodArgumentTypeMismatchException.class })
-	public ResponseEntity<Object> handleMethodArgumentTypeMismatch(final MethodArgumentTypeMismatchException ex,
-			final WebRequest request) {
-		logException(ex);
-		final String error = ex.getName() + " should be of type " + ex.getRequiredType().getName();
-		final ApiError apiError = new ApiError(HttpStatus.BAD_REQUEST, ApiErrorCodes.METHOD_MISMATCH.getCode(),
-				ex.getLocalizedMessage(), error);
-		return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
-
-	}
-
-	@ExceptionHandler({ ConstraintViolationException.class })
-	public ResponseEntity<Object> handleConstraintViolation(final ConstraintViolationException ex,
-			final WebRequest request) {
-		logException(ex);
-		final List<String> errors = new ArrayList<>();
-		for (final ConstraintViolation<?> violation : ex.getConstraintViolations()) {
-			errors.add(violation.getRootBeanClass().getName() + " " + violation.getPropertyPath() + ": "
-					+ violation.getMessage());
-		}
-		final ApiError apiError = new ApiError(HttpStatus.BAD_REQUEST, ApiErrorCodes.CONSTRAINT_VIOLATION.getCode(),
-				ex.getLocalizedMessage(), errors);
+		recordError(apiError, request);
 		return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
 	}
 
@@ -165,6 +151,7 @@ public abstract class RestControllerAdvice extends ResponseEntityExceptionHandle
 		String error = "Either JSON syntax is invalid, or RSpace could not parse an expected date or numeric field";
 		final ApiError apiError = new ApiError(HttpStatus.BAD_REQUEST, ApiErrorCodes.UNREADABLE.getCode(),
 				ex.getLocalizedMessage(), error);
+		recordError(apiError, request);
 		return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
 	}
 
@@ -176,6 +163,7 @@ public abstract class RestControllerAdvice extends ResponseEntityExceptionHandle
 		final String error = "No handler found for " + ex.getHttpMethod() + " " + ex.getRequestURL();
 		final ApiError apiError = new ApiError(HttpStatus.NOT_FOUND, ApiErrorCodes.NO_HANDLER.getCode(),
 				ex.getLocalizedMessage(), error);
+		recordError(apiError, request);
 		return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
 	}
 
@@ -184,7 +172,7 @@ public abstract class RestControllerAdvice extends ResponseEntityExceptionHandle
 	protected ResponseEntity<Object> handleHttpRequestMethodNotSupported(
 			final HttpRequestMethodNotSupportedException ex, final HttpHeaders headers, final HttpStatus status,
 			final WebRequest request) {
-		log.info(ex.getClass().getName());
+		logException(ex);
 		final StringBuilder builder = new StringBuilder();
 		builder.append(ex.getMethod());
 		builder.append(" method is not supported for this request. Supported methods are ");
@@ -192,6 +180,7 @@ public abstract class RestControllerAdvice extends ResponseEntityExceptionHandle
 
 		final ApiError apiError = new ApiError(HttpStatus.METHOD_NOT_ALLOWED, ApiErrorCodes.NOT_ALLOWED.getCode(),
 				ex.getLocalizedMessage(), builder.toString());
+		recordError(apiError, request);
 		return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
 	}
 
@@ -207,54 +196,194 @@ public abstract class RestControllerAdvice extends ResponseEntityExceptionHandle
 
 		final ApiError apiError = new ApiError(HttpStatus.UNSUPPORTED_MEDIA_TYPE, ApiErrorCodes.MEDIATYPE.getCode(),
 				ex.getLocalizedMessage(), builder.substring(0, builder.length() - 2));
+		recordError(apiError, request);
 		return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
 	}
 
-	// 422
-	@ExceptionHandler({ IllegalArgumentException.class })
-	public ResponseEntity<Object> handleIllegalArgumen(final IllegalArgumentException ex, final WebRequest request) {
-		log.error("error", ex);
-		final ApiError apiError = new ApiError(HttpStatus.UNPROCESSABLE_ENTITY,
-				ApiErrorCodes.ILLEGAL_ARGUMENT.getCode(), ex.getLocalizedMessage(), ex.getMessage());
+	protected ResponseEntity<Object> handleServletRequestBindingException(ServletRequestBindingException ex,
+			HttpHeaders headers, HttpStatus status, WebRequest request) {
+		logException(ex);
+		String error = "Missing required header or parameter - have you supplied an 'apiKey' header?";
+		final ApiError apiError = new ApiError(HttpStatus.BAD_REQUEST, ApiErrorCodes.BINDING.getCode(),
+				ex.getLocalizedMessage(), error);
+		recordError(apiError, request);
 		return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
+
+	}
+
+	/**
+	 * Converts all exceptions not handled by the Spring MVC handlers above using the {@link ExceptionMappingRegistry}.
+	 * <br>
+	 * Mapped types that are subclasses of exceptions handled by <code>ResponseEntityExceptionHandler</code> must be
+	 * listed in the <code>@ExceptionHandler</code> annotation here, else Spring's handler takes precedence.<br>
+	 * Exceptions converted by the mapping for a type that formerly had its own handler method are passed to that
+	 * deprecated method, so that subclasses overriding it keep working until it is removed.
+	 */
+	@ExceptionHandler({ MethodArgumentTypeMismatchException.class, MethodArgumentConversionNotSupportedException.class,
+			Exception.class })
+	public ResponseEntity<Object> handleAll(final Exception ex, final WebRequest request) {
+		ExceptionMapping<?> mapping = exceptionMappings.resolve(ex.getClass());
+		if (mapping == null) {
+			return handleUnmapped500Error(ex, ApiErrorCodes.GENERAL_ERROR, "General server error", request);
+		}
+		Class<?> mappedType = mapping.getExceptionType();
+		if (mappedType == MethodArgumentTypeMismatchException.class) {
+			return handleMethodArgumentTypeMismatch((MethodArgumentTypeMismatchException) ex, request);
+		} else if (mappedType == ConstraintViolationException.class) {
+			return handleConstraintViolation((ConstraintViolationException) ex, request);
+		} else if (mappedType == IllegalArgumentException.class) {
+			return handleIllegalArgumen((IllegalArgumentException) ex, request);
+		} else if (mappedType == IOException.class) {
+			return handleIO(ex, request);
+		} else if (mappedType == MethodArgumentConversionNotSupportedException.class) {
+			return handleArgumentConversion(ex, request);
+		}
+		return handleMapped(ex, mapping, request);
 	}
 
-	// 500
-	@ExceptionHandler({ IOException.class })
+	private ResponseEntity<Object> handleMapped(final Exception ex, ExceptionMapping<?> mapping,
+			final WebRequest request) {
+		logException(ex);
+		if (mapping.isLogStackTrace()) {
+			logStackTrace(ex);
+		}
+		final ApiError apiError = mapping.toApiError(ex);
+		recordError(apiError, request);
+		return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
+	}
+
+	/**
+	 * @deprecated Register a mapping for MethodArgumentTypeMismatchException instead of overriding this method.
+	 *             Called by {@link #handleAll(Exception, WebRequest)}; will be removed in 2.0.
+	 */
+	@Deprecated
+	public ResponseEntity<Object> handleMethodArgumentTypeMismatch(final MethodArgumentTypeMismatchException ex,
+			final WebRequest request) {
+		return handleMappedAs(ex, MethodArgumentTypeMismatchException.class, request);
+	}
+
+	/**
+	 * @deprecated Register a mapping for ConstraintViolationException instead of overriding this method.
+	 *             Called by {@link #handleAll(Exception, WebRequest)}; will be removed in 2.0.
+	 */
+	@Deprecated
+	public ResponseEntity<Object> handleConstraintViolation(final ConstraintViolationException ex,
+			final WebRequest request) {
+		return handleMappedAs(ex, ConstraintViolationException.class, request);
+	}
+
+	/**
+	 * @deprecated Register a mapping for IllegalArgumentException instead of overriding this method.
+	 *             Called by {@link #handleAll(Exception, WebRequest)}; will be removed in 2.0.
+	 */
+	@Deprecated
+	public ResponseEntity<Object> handleIllegalArgumen(final IllegalArgumentException ex, final WebRequest request) {
+		return handleMappedAs(ex, IllegalArgumentException.class, request);
+	}
+
+	/**
+	 * @deprecated Register a mapping for IOException instead of overriding this method.
+	 *             Called by {@link #handleAll(Exception, WebRequest)}; will be removed in 2.0.
+	 */
+	@Deprecated
 	public ResponseEntity<Object> handleIO(final Exception ex, final WebRequest request) {
-		return handle500Error(ex, ApiErrorCodes.IO, "I/O error");
+		if (ex instanceof IOException) {
+			return handleMappedAs(ex, IOException.class, request);
+		}
+		return handleUnmapped500Error(ex, ApiErrorCodes.IO, "I/O error", request);
 	}
 
-	// 500
-	@ExceptionHandler({ MethodArgumentConversionNotSupportedException.class })
+	/**
+	 * @deprecated Register a mapping for MethodArgumentConversionNotSupportedException instead of overriding this
+	 *             method. Called by {@link #handleAll(Exception, WebRequest)}; will be removed in 2.0.
+	 */
+	@Deprecated
 	public ResponseEntity<Object> handleArgumentConversion(final Exception ex, final WebRequest request) {
-		return handle500Error(ex, ApiErrorCodes.INTERNAL_ARGUMENT_CONVERSION, "Error converting argument");
+		if (ex instanceof MethodArgumentConversionNotSupportedException) {
+			return handleMappedAs(ex, MethodArgumentConversionNotSupportedException.class, request);
+		}
+		return handleUnmapped500Error(ex, ApiErrorCodes.INTERNAL_ARGUMENT_CONVERSION, "Error converting argument",
+				request);
 	}
 
-	protected ResponseEntity<Object> handleServletRequestBindingException(ServletRequestBindingException ex,
-			HttpHeaders headers, HttpStatus status, WebRequest request) {
-		String error = "Missing required header or parameter - have you supplied an 'apiKey' header?";
-		final ApiError apiError = new ApiError(HttpStatus.BAD_REQUEST, ApiErrorCodes.BINDING.getCode(),
-				ex.getLocalizedMessage(), error);
-		return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
+	/**
+	 * Converts the exception, an instance of <code>type</code>, using the mapping registered for <code>type</code>
+	 */
+	private ResponseEntity<Object> handleMappedAs(final Exception ex, Class<? extends Throwable> type,
+			final WebRequest request) {
+		ExceptionMapping<?> mapping = exceptionMappings.resolve(type);
+		if (mapping == null) {
+			return handleUnmapped500Error(ex, ApiErrorCodes.GENERAL_ERROR, "General server error", request);
+		}
+		return handleMapped(ex, mapping, request);
+	}
 
+	/**
+	 * Mappings used by {@link #handleAll(Exception, WebRequest)}. Subclasses can register additional mappings,
+	 * e.g. in their constructor.
+	 */
+	protected ExceptionMappingRegistry getExceptionMappings() {
+		return exceptionMappings;
 	}
 
-	@ExceptionHandler({ Exception.class })
-	public ResponseEntity<Object> handleAll(final Exception ex, final WebRequest request) {
-		return handle500Error(ex, ApiErrorCodes.GENERAL_ERROR, "General server error");
+	private ResponseEntity<Object> handleUnmapped500Error(final Exception ex, ApiErrorCodes code, String msg,
+			final WebRequest request) {
+		ResponseEntity<Object> response = handle500Error(ex, code, msg);
+		recordError((ApiError) response.getBody(), request);
+		return response;
 	}
 
 	protected ResponseEntity<Object> handle500Error(final Exception ex, ApiErrorCodes code, String msg) {
 		logException(ex);
-		log.error("error", ex);
+		logStackTrace(ex);
 		final ApiError apiError = new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, code.getCode(),
 				ex.getLocalizedMessage(), msg);
 		return new ResponseEntity<>(apiError, new HttpHeaders(), apiError.getStatus());
 	}
 	
+	/**
+	 * Optional resolver for localised validation messages, used by <code>handleBindException</code> and
+	 * <code>handleMethodArgumentNotValid</code>. Returns <code>null</code> by default, in which case each error's
+	 * default message is used.<br>
+	 * Subclasses can override to return a single, shared {@link CachingMessageResolver} instance.
+	 */
+	protected CachingMessageResolver getMessageResolver() {
+		return null;
+	}
+
+	private String resolveMessage(final ObjectError error, final WebRequest request) {
+		CachingMessageResolver resolver = getMessageResolver();
+		if (resolver == null) {
+			return error.getDefaultMessage();
+		}
+		return resolver.resolve(error, request.getLocale());
+	}
+
+	/**
+	 * Optional tracker of the clients, endpoints and error codes producing the most errors, fed by every handler.
+	 * Returns <code>null</code> by default, in which case nothing is recorded.<br>
+	 * Subclasses can override to return a single, shared {@link ErrorHeavyHitterTracker} instance.
+	 */
+	protected ErrorHeavyHitterTracker getErrorTracker() {
+		return null;
+	}
+
+	private void recordError(final ApiError apiError, final WebRequest request) {
+		ErrorHeavyHitterTracker tracker = getErrorTracker();
+		if (tracker != null) {
+			tracker.record(apiError, request);
+		}
+	}
+
 	protected void logException(final Exception ex) {
 		log.info(ex.getClass().getName());
 	}
 
+	/**
+	 * Logs the stack trace of exceptions indicating a server-side problem
+	 */
+	protected void logStackTrace(final Exception ex) {
+		log.error("error", ex);
+	}
+
 }
@@ -0,0 +1,25 @@
+package com.researchspace.apiutils.rest.utils;
+
+import lombok.Value;
+
+/**
+ * A single node's circuit-breaker statistics for one publishing interval, as exchanged via a
+ * {@link CircuitBreakerStateStore}.
+ */
+@Value
+public class BreakerNodeState {
+	String breakerName;
+	String nodeId;
+	long successfulCalls;
+	long failedCalls;
+	/**
+	 * Whether this node's circuit breaker was open when the state was published
+	 */
+	boolean open;
+	/**
+	 * When this node's circuit breaker opened due to this node's own failures, or 0 if it is not open or was opened
+	 * because of other nodes' state
+	 */
+	long locallyOpenedAtMillis;
+	long timestampMillis;
+}
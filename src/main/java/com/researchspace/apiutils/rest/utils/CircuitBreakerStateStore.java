@@ -0,0 +1,25 @@
+package com.researchspace.apiutils.rest.utils;
+
+import java.util.List;
+
+/**
+ * SPI for sharing circuit-breaker statistics between nodes of a cluster, so that a failing downstream service
+ * detected by some nodes opens the circuit on all of them.<br>
+ * Implementations are only ever called from the background publishing thread of a
+ * {@link SharedCircuitBreakerState}, never on the API call path, so may perform blocking I/O.
+ */
+public interface CircuitBreakerStateStore {
+
+	/**
+	 * Publishes this node's latest statistics for a circuit breaker, replacing any previously published by the
+	 * same node.
+	 */
+	void publish(BreakerNodeState state);
+
+	/**
+	 * @return the most recently published state of each node for the named circuit breaker, including this node.
+	 *         Can be empty but not <code>null</code>.
+	 */
+	List<BreakerNodeState> getStates(String breakerName);
+
+}
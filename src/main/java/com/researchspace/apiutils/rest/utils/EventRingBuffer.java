@@ -0,0 +1,82 @@
+package com.researchspace.apiutils.rest.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size, lock-free, multi-producer single-consumer queue (after Vyukov's bounded queue).<br>
+ * Each slot carries a sequence number telling producers and the consumer whether it is free to write or
+ * ready to read, so {@link #offer(Object)} never blocks: when the buffer is full the element is rejected.
+ */
+class EventRingBuffer<E> {
+
+	private final int mask;
+	private final AtomicReferenceArray<E> elements;
+	private final AtomicLongArray sequences;
+	private final AtomicLong tail = new AtomicLong();
+	// only accessed by the single consumer thread
+	private long head = 0;
+
+	/**
+	 * @param capacity a power of 2
+	 */
+	EventRingBuffer(int capacity) {
+		if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+			throw new IllegalArgumentException("capacity must be a power of 2 but was " + capacity);
+		}
+		mask = capacity - 1;
+		elements = new AtomicReferenceArray<>(capacity);
+		sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++) {
+			sequences.set(i, i);
+		}
+	}
+
+	/**
+	 * Adds an element if there is space. Safe to call from any thread.
+	 *
+	 * @return <code>false</code> if the buffer was full and the element was not added
+	 */
+	boolean offer(E element) {
+		long pos = tail.get();
+		while (true) {
+			int index = (int) (pos & mask);
+			long available = sequences.get(index) - pos;
+			if (available == 0) {
+				if (tail.compareAndSet(pos, pos + 1)) {
+					elements.set(index, element);
+					sequences.set(index, pos + 1);
+					return true;
+				}
+				pos = tail.get();
+			} else if (available < 0) {
+				return false;
+			} else {
+				pos = tail.get();
+			}
+		}
+	}
+
+	/**
+	 * Removes the oldest element. Must only be called from a single consumer thread.
+	 *
+	 * @return the oldest element, or <code>null</code> if the buffer is empty
+	 */
+	E poll() {
+		int index = (int) (head & mask);
+		if (sequences.get(index) != head + 1) {
+			return null;
+		}
+		E element = elements.get(index);
+		elements.set(index, null);
+		sequences.set(index, head + mask + 1);
+		head++;
+		return element;
+	}
+
+	int capacity() {
+		return mask + 1;
+	}
+
+}
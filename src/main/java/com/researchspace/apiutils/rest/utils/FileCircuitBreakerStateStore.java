@@ -0,0 +1,129 @@
+package com.researchspace.apiutils.rest.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Stores circuit-breaker state as one small properties file per breaker and node, i.e.
+ * <code>baseDir/breakerName/nodeId.state</code>, with names percent-encoded.<br>
+ * Any processes that can see the same directory share state: e.g. several JVMs on one host using a
+ * directory under <code>/dev/shm</code> (shared memory), or nodes mounting a shared volume.
+ * Files are replaced atomically so readers never see a partially written state.
+ */
+@Slf4j
+public class FileCircuitBreakerStateStore implements CircuitBreakerStateStore {
+
+	static final String SUFFIX = ".state";
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+	private final Path baseDir;
+
+	public FileCircuitBreakerStateStore(Path baseDir) {
+		if (baseDir == null) {
+			throw new IllegalArgumentException("baseDir cannot be null");
+		}
+		this.baseDir = baseDir;
+	}
+
+	@Override
+	public void publish(BreakerNodeState state) {
+		Properties props = new Properties();
+		props.setProperty("breakerName", state.getBreakerName());
+		props.setProperty("nodeId", state.getNodeId());
+		props.setProperty("successfulCalls", Long.toString(state.getSuccessfulCalls()));
+		props.setProperty("failedCalls", Long.toString(state.getFailedCalls()));
+		props.setProperty("open", Boolean.toString(state.isOpen()));
+		props.setProperty("locallyOpenedAtMillis", Long.toString(state.getLocallyOpenedAtMillis()));
+		props.setProperty("timestampMillis", Long.toString(state.getTimestampMillis()));
+		try {
+			Path dir = Files.createDirectories(breakerDir(state.getBreakerName()));
+			String fileName = encode(state.getNodeId());
+			Path tmp = Files.createTempFile(dir, fileName, ".tmp");
+			try {
+				try (OutputStream out = Files.newOutputStream(tmp)) {
+					props.store(out, null);
+				}
+				Files.move(tmp, dir.resolve(fileName + SUFFIX), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not publish circuit breaker state to " + baseDir, e);
+		}
+	}
+
+	@Override
+	public List<BreakerNodeState> getStates(String breakerName) {
+		List<BreakerNodeState> states = new ArrayList<>();
+		Path dir = breakerDir(breakerName);
+		if (!Files.isDirectory(dir)) {
+			return states;
+		}
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + SUFFIX)) {
+			for (Path file : files) {
+				BreakerNodeState state = readState(file);
+				if (state != null) {
+					states.add(state);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException("Could not read circuit breaker state from " + dir, e);
+		}
+		return states;
+	}
+
+	private BreakerNodeState readState(Path file) throws IOException {
+		Properties props = new Properties();
+		try (InputStream in = Files.newInputStream(file)) {
+			props.load(in);
+		} catch (NoSuchFileException e) {
+			// removed since listing the directory
+			return null;
+		}
+		try {
+			return new BreakerNodeState(props.getProperty("breakerName"), props.getProperty("nodeId"),
+					Long.parseLong(props.getProperty("successfulCalls")),
+					Long.parseLong(props.getProperty("failedCalls")), Boolean.parseBoolean(props.getProperty("open")),
+					Long.parseLong(props.getProperty("locallyOpenedAtMillis", "0")),
+					Long.parseLong(props.getProperty("timestampMillis")));
+		} catch (NumberFormatException e) {
+			log.warn("Ignoring unreadable circuit breaker state file {}", file);
+			return null;
+		}
+	}
+
+	private Path breakerDir(String breakerName) {
+		return baseDir.resolve(encode(breakerName));
+	}
+
+	/**
+	 * Percent-encodes all characters other than ASCII letters, digits, '-' and '_', so distinct names always map to
+	 * distinct file names, and names such as '..' can't escape the base directory
+	 */
+	static String encode(String name) {
+		StringBuilder encoded = new StringBuilder(name.length());
+		for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+			if ((b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9') || b == '-' || b == '_') {
+				encoded.append((char) b);
+			} else {
+				encoded.append('%').append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+			}
+		}
+		return encoded.toString();
+	}
+
+}
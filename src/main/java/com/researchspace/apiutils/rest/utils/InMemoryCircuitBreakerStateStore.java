@@ -0,0 +1,31 @@
+package com.researchspace.apiutils.rest.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds circuit-breaker state in memory. Shares state only between breakers in the same JVM, so is
+ * mostly useful for tests, or for several facades calling the same downstream service.
+ */
+public class InMemoryCircuitBreakerStateStore implements CircuitBreakerStateStore {
+
+	private final Map<String, Map<String, BreakerNodeState>> states = new ConcurrentHashMap<>();
+
+	@Override
+	public void publish(BreakerNodeState state) {
+		states.computeIfAbsent(state.getBreakerName(), k -> new ConcurrentHashMap<>()).put(state.getNodeId(), state);
+	}
+
+	@Override
+	public List<BreakerNodeState> getStates(String breakerName) {
+		Map<String, BreakerNodeState> nodeStates = states.get(breakerName);
+		if (nodeStates == null) {
+			return Collections.emptyList();
+		}
+		return new ArrayList<>(nodeStates.values());
+	}
+
+}
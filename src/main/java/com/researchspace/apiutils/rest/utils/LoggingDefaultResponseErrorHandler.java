@@ -0,0 +1,26 @@
+package com.researchspace.apiutils.rest.utils;
+
+import java.io.IOException;
+
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Logs error responses, then throws the same exceptions as Spring's {@link DefaultResponseErrorHandler}, e.g.
+ * <code>HttpServerErrorException</code> for 5xx responses, so that failed calls made through
+ * {@link SimpleResilienceFacade} are retried and recorded by its circuit breaker.
+ * The thrown exception holds the response body, so a serialized ApiError can be recovered by
+ * {@link RestUtil#fromException(Throwable)}.
+ */
+@Slf4j
+public class LoggingDefaultResponseErrorHandler extends DefaultResponseErrorHandler {
+
+	@Override
+	public void handleError(ClientHttpResponse response) throws IOException {
+		log.error("Response error: {} {}", response.getRawStatusCode(), response.getStatusText());
+		super.handleError(response);
+	}
+
+}
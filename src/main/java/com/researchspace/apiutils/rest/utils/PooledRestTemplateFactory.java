@@ -0,0 +1,112 @@
+package com.researchspace.apiutils.rest.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Creates RestTemplates backed by a shared, pooled HTTP client using persistent (keep-alive) connections
+ * and transparent gzip/deflate response decompression.
+ * <ul>
+ * <li>The default read timeout equals {@link SimpleResilienceFacade#SLOW_CALL_DURATION_THRESHOLD}. This limits the
+ * time waiting for data between reads, not the total duration of a call, so a stalled connection fails instead of
+ * blocking a pooled connection indefinitely, but a slow response that keeps sending data does not.
+ * <li>Idle connections are evicted after {@link #IDLE_CONNECTION_TIMEOUT}.
+ * </ul>
+ * RestTemplates created by one factory share its connection pool; {@link #getPoolStats()} reports pool usage.
+ * Close the factory on shutdown to release connections.
+ */
+public class PooledRestTemplateFactory implements Closeable {
+
+	public static final int DEFAULT_MAX_CONNECTIONS = 100;
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_ROUTE = 20;
+	public static final Duration DEFAULT_CONNECT_TIMEOUT = Duration.ofSeconds(5);
+	public static final Duration DEFAULT_READ_TIMEOUT = SimpleResilienceFacade.SLOW_CALL_DURATION_THRESHOLD;
+	public static final Duration IDLE_CONNECTION_TIMEOUT = Duration.ofSeconds(30);
+	static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final CloseableHttpClient httpClient;
+	private final HttpComponentsClientHttpRequestFactory requestFactory;
+
+	/**
+	 * Creates a factory with default pool sizes and timeouts
+	 */
+	public PooledRestTemplateFactory() {
+		this(DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_ROUTE, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+	}
+
+	/**
+	 * @param maxConnections         maximum number of pooled connections in total
+	 * @param maxConnectionsPerRoute maximum number of pooled connections to any single host
+	 * @param connectTimeout         timeout to establish a connection, also used as the maximum wait
+	 *                               for a connection from the pool
+	 * @param readTimeout            socket read timeout, i.e. maximum inactivity between reads
+	 */
+	public PooledRestTemplateFactory(int maxConnections, int maxConnectionsPerRoute, Duration connectTimeout,
+			Duration readTimeout) {
+		if (maxConnections <= 0 || maxConnectionsPerRoute <= 0) {
+			throw new IllegalArgumentException("Connection pool sizes must be > 0");
+		}
+		connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(maxConnections);
+		connectionManager.setDefaultMaxPerRoute(maxConnectionsPerRoute);
+		connectionManager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout((int) connectTimeout.toMillis())
+				.setConnectionRequestTimeout((int) connectTimeout.toMillis())
+				.setSocketTimeout((int) readTimeout.toMillis())
+				.build();
+		// content compression and keep-alive are enabled by default
+		httpClient = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.evictExpiredConnections()
+				.evictIdleConnections(IDLE_CONNECTION_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)
+				.build();
+		requestFactory = new HttpComponentsClientHttpRequestFactory(httpClient);
+	}
+
+	/**
+	 * Creates a RestTemplate using a {@link LoggingDefaultResponseErrorHandler}, which logs error responses and
+	 * throws exceptions for them, as needed by {@link SimpleResilienceFacade}.
+	 */
+	public RestTemplate createRestTemplate() {
+		return createRestTemplate(new LoggingDefaultResponseErrorHandler());
+	}
+
+	/**
+	 * Creates a RestTemplate using the given error handler. For calls made through
+	 * {@link SimpleResilienceFacade#makeApiCall(java.util.function.Supplier)}, the handler must throw
+	 * on error responses, else failures are neither retried nor recorded by the circuit breaker.
+	 */
+	public RestTemplate createRestTemplate(ResponseErrorHandler errorHandler) {
+		RestTemplate restTemplate = new RestTemplate(requestFactory);
+		restTemplate.setErrorHandler(errorHandler);
+		return restTemplate;
+	}
+
+	/**
+	 * @return current totals of leased, pending and available connections, and the pool's maximum size
+	 */
+	public PoolStats getPoolStats() {
+		return connectionManager.getTotalStats();
+	}
+
+	@Override
+	public void close() throws IOException {
+		httpClient.close();
+	}
+
+}
@@ -0,0 +1,40 @@
+package com.researchspace.apiutils.rest.utils;
+
+import java.time.Instant;
+
+import com.researchspace.apiutils.ApiError;
+
+import lombok.Value;
+
+/**
+ * A decoded retry or circuit-breaker event, retained by {@link ResilienceEventPipeline} for diagnostics.
+ */
+@Value
+public class ResilienceEvent {
+
+	public enum Type {
+		/** A failed call is about to be retried */
+		RETRY,
+		/** All retry attempts failed */
+		RETRY_FAILED,
+		/** The circuit breaker changed state */
+		STATE_TRANSITION,
+		/** The circuit breaker rejected a call */
+		CALL_NOT_PERMITTED,
+		/** A call took longer than the circuit breaker's slow-call threshold */
+		SLOW_CALL
+	}
+
+	/**
+	 * The name of the Retry or CircuitBreaker, identifying the downstream service
+	 */
+	String name;
+	Type type;
+	Instant timestamp;
+	String detail;
+	/**
+	 * The error decoded from the failed call, or <code>null</code> if not relevant
+	 */
+	ApiError apiError;
+
+}
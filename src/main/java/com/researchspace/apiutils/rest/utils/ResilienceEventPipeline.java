@@ -0,0 +1,259 @@
+package com.researchspace.apiutils.rest.utils;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.researchspace.apiutils.ApiError;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnCallNotPermittedEvent;
+import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnErrorEvent;
+import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnStateTransitionEvent;
+import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnSuccessEvent;
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.event.RetryOnErrorEvent;
+import io.github.resilience4j.retry.event.RetryOnRetryEvent;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Handles Retry and CircuitBreaker events off the calling thread.<br>
+ * Event listeners registered by {@link #register(Retry)} and {@link #register(CircuitBreaker)} only push the
+ * Resilience4j event into a fixed-size lock-free ring buffer; a background thread decodes any ApiError from the
+ * failed call, logs the event, and retains the most recent events per downstream service for
+ * {@link #getRecentEvents(String, int)}.<br>
+ * If events arrive faster than they are handled, events that don't fit in the buffer are dropped and counted,
+ * so calls are never delayed. When the buffer is empty the background thread parks until a listener adds an event.
+ */
+@Slf4j
+public class ResilienceEventPipeline implements AutoCloseable {
+
+	public static final int DEFAULT_CAPACITY = 1024;
+	public static final int DEFAULT_HISTORY_SIZE = 100;
+
+	private static class DefaultHolder {
+		static final ResilienceEventPipeline INSTANCE = new ResilienceEventPipeline(DEFAULT_CAPACITY,
+				DEFAULT_HISTORY_SIZE, true);
+	}
+
+	/**
+	 * @return a pipeline shared by all {@link SimpleResilienceFacade}s, started on first use. It can't be closed,
+	 *         and runs until the JVM exits.
+	 */
+	public static ResilienceEventPipeline getDefault() {
+		return DefaultHolder.INSTANCE;
+	}
+
+	private final EventRingBuffer<Object> buffer;
+	private final int historySize;
+	private final Map<String, Deque<ResilienceEvent>> history = new ConcurrentHashMap<>();
+	private final LongAdder dropped = new LongAdder();
+	private final Thread consumer;
+	// set by the consumer before it parks, so listeners know to unpark it
+	private final AtomicBoolean consumerParked = new AtomicBoolean();
+	private final boolean shared;
+	private volatile boolean running = true;
+
+	/**
+	 * @param capacity    number of events that can be waiting to be handled; a power of 2
+	 * @param historySize number of events retained per downstream service
+	 */
+	public ResilienceEventPipeline(int capacity, int historySize) {
+		this(capacity, historySize, false);
+	}
+
+	private ResilienceEventPipeline(int capacity, int historySize, boolean shared) {
+		if (historySize <= 0) {
+			throw new IllegalArgumentException("historySize must be > 0 but was " + historySize);
+		}
+		this.buffer = new EventRingBuffer<>(capacity);
+		this.historySize = historySize;
+		this.shared = shared;
+		this.consumer = new Thread(this::consume, "resilience-event-pipeline");
+		consumer.setDaemon(true);
+		consumer.start();
+	}
+
+	/**
+	 * Captures retry and retry-failure events
+	 */
+	public void register(Retry retry) {
+		retry.getEventPublisher().onRetry(this::publish);
+		retry.getEventPublisher().onError(this::publish);
+	}
+
+	/**
+	 * Captures state transition, call-not-permitted and slow-call events
+	 */
+	public void register(CircuitBreaker circuitBreaker) {
+		long slowCallNanos = circuitBreaker.getCircuitBreakerConfig().getSlowCallDurationThreshold().toNanos();
+		circuitBreaker.getEventPublisher().onStateTransition(this::publish);
+		circuitBreaker.getEventPublisher().onCallNotPermitted(this::publish);
+		circuitBreaker.getEventPublisher().onSuccess(e -> {
+			if (e.getElapsedDuration().toNanos() >= slowCallNanos) {
+				publish(e);
+			}
+		});
+		circuitBreaker.getEventPublisher().onError(e -> {
+			if (e.getElapsedDuration().toNanos() >= slowCallNanos) {
+				publish(e);
+			}
+		});
+	}
+
+	private void publish(Object event) {
+		if (!buffer.offer(event)) {
+			dropped.increment();
+		} else if (consumerParked.get() && consumerParked.compareAndSet(true, false)) {
+			LockSupport.unpark(consumer);
+		}
+	}
+
+	private void consume() {
+		while (running) {
+			Object event = buffer.poll();
+			if (event == null) {
+				consumerParked.set(true);
+				// re-check after publishing the flag, else an event offered in between would wait for the next one
+				event = buffer.poll();
+				if (event == null) {
+					LockSupport.park(this);
+					consumerParked.set(false);
+					continue;
+				}
+				consumerParked.set(false);
+			}
+			try {
+				handle(event);
+			} catch (RuntimeException e) {
+				log.warn("Could not handle resilience event {}: {}", event, e.getMessage());
+			}
+		}
+	}
+
+	private void handle(Object event) {
+		ResilienceEvent decoded = decode(event);
+		if (decoded == null) {
+			return;
+		}
+		switch (decoded.getType()) {
+		case RETRY:
+			log.warn("Problem with call to {}, retrying ({}): {}", decoded.getName(), decoded.getDetail(),
+					decoded.getApiError());
+			break;
+		case RETRY_FAILED:
+			log.error("Call to {} failed ({}): {}", decoded.getName(), decoded.getDetail(), decoded.getApiError());
+			break;
+		case CALL_NOT_PERMITTED:
+			log.error("Circuit breaker prevented call to {} - is either slow or unavailable", decoded.getName());
+			break;
+		default:
+			log.warn("{} {}: {}", decoded.getType(), decoded.getName(), decoded.getDetail());
+		}
+		Deque<ResilienceEvent> events = history.computeIfAbsent(decoded.getName(), k -> new ArrayDeque<>());
+		synchronized (events) {
+			if (events.size() == historySize) {
+				events.removeFirst();
+			}
+			events.addLast(decoded);
+		}
+	}
+
+	private ResilienceEvent decode(Object event) {
+		if (event instanceof RetryOnRetryEvent) {
+			RetryOnRetryEvent e = (RetryOnRetryEvent) event;
+			return new ResilienceEvent(e.getName(), ResilienceEvent.Type.RETRY, e.getCreationTime().toInstant(),
+					"attempt " + e.getNumberOfRetryAttempts(), toApiError(e.getLastThrowable()));
+		} else if (event instanceof RetryOnErrorEvent) {
+			RetryOnErrorEvent e = (RetryOnErrorEvent) event;
+			return new ResilienceEvent(e.getName(), ResilienceEvent.Type.RETRY_FAILED, e.getCreationTime().toInstant(),
+					"after " + e.getNumberOfRetryAttempts() + " attempts", toApiError(e.getLastThrowable()));
+		} else if (event instanceof CircuitBreakerOnStateTransitionEvent) {
+			CircuitBreakerOnStateTransitionEvent e = (CircuitBreakerOnStateTransitionEvent) event;
+			return new ResilienceEvent(e.getCircuitBreakerName(), ResilienceEvent.Type.STATE_TRANSITION,
+					e.getCreationTime().toInstant(), e.getStateTransition().toString(), null);
+		} else if (event instanceof CircuitBreakerOnCallNotPermittedEvent) {
+			CircuitBreakerOnCallNotPermittedEvent e = (CircuitBreakerOnCallNotPermittedEvent) event;
+			return new ResilienceEvent(e.getCircuitBreakerName(), ResilienceEvent.Type.CALL_NOT_PERMITTED,
+					e.getCreationTime().toInstant(), "call not permitted", null);
+		} else if (event instanceof CircuitBreakerOnSuccessEvent) {
+			CircuitBreakerOnSuccessEvent e = (CircuitBreakerOnSuccessEvent) event;
+			return new ResilienceEvent(e.getCircuitBreakerName(), ResilienceEvent.Type.SLOW_CALL,
+					e.getCreationTime().toInstant(), slowCallDetail(e.getElapsedDuration()), null);
+		} else if (event instanceof CircuitBreakerOnErrorEvent) {
+			CircuitBreakerOnErrorEvent e = (CircuitBreakerOnErrorEvent) event;
+			return new ResilienceEvent(e.getCircuitBreakerName(), ResilienceEvent.Type.SLOW_CALL,
+					e.getCreationTime().toInstant(), slowCallDetail(e.getElapsedDuration()),
+					toApiError(e.getThrowable()));
+		}
+		return null;
+	}
+
+	private static String slowCallDetail(Duration elapsed) {
+		return "call took " + elapsed.toMillis() + "ms";
+	}
+
+	private static ApiError toApiError(Throwable t) {
+		if (t == null) {
+			return null;
+		}
+		try {
+			return RestUtil.fromException(t);
+		} catch (RuntimeException e) {
+			// response body wasn't a serialized ApiError
+			return RestUtil.defaultApiError(t);
+		}
+	}
+
+	/**
+	 * @param name the Retry / CircuitBreaker name of a downstream service, i.e. the downstream name of a
+	 *             {@link SimpleResilienceFacade}
+	 * @param n    maximum number of events to return
+	 * @return up to <code>n</code> of the most recently handled events for the service, newest first
+	 */
+	public List<ResilienceEvent> getRecentEvents(String name, int n) {
+		Deque<ResilienceEvent> events = history.get(name);
+		if (events == null) {
+			return Collections.emptyList();
+		}
+		List<ResilienceEvent> recent = new ArrayList<>();
+		synchronized (events) {
+			Iterator<ResilienceEvent> it = events.descendingIterator();
+			while (it.hasNext() && recent.size() < n) {
+				recent.add(it.next());
+			}
+		}
+		return recent;
+	}
+
+	/**
+	 * @return number of events discarded because the buffer was full
+	 */
+	public long getDroppedEventCount() {
+		return dropped.sum();
+	}
+
+	/**
+	 * Stops the background thread; events not yet handled are discarded. Has no effect on the
+	 * {@link #getDefault() default} pipeline.
+	 */
+	@Override
+	public void close() {
+		if (shared) {
+			log.warn("Ignoring close() of the default ResilienceEventPipeline, which is shared by all facades");
+			return;
+		}
+		running = false;
+		LockSupport.unpark(consumer);
+	}
+
+}
@@ -0,0 +1,172 @@
+package com.researchspace.apiutils.rest.utils;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker.State;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnStateTransitionEvent;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Shares a local {@link CircuitBreaker}'s outcomes with other nodes through a {@link CircuitBreakerStateStore},
+ * and opens the local circuit when the cluster as a whole sees the downstream service failing.
+ * <br>
+ * Call outcomes are only counted on the calling thread; a background thread publishes the counts every
+ * <code>publishInterval</code> and reads back the other nodes' states, so the store is never accessed on the call path.
+ * The local circuit is opened, if currently closed, when either:
+ * <ul>
+ * <li>another node reports its circuit was opened by its own failures, since this node's circuit last closed, or
+ * <li>the failure rate summed over all nodes' latest intervals reaches the breaker's configured failure rate
+ * threshold, and at least the breaker's minimum number of calls were made.
+ * </ul>
+ * Opens copied from other nodes or caused by the cluster failure rate are not themselves propagated, so that
+ * nodes can't keep re-opening each other after the downstream service recovers. States published before this
+ * node's circuit last closed, or older than 3 publishing intervals, are ignored; this assumes node clocks are
+ * roughly synchronised.
+ */
+@Slf4j
+public class SharedCircuitBreakerState implements AutoCloseable {
+
+	static final int STALE_INTERVALS = 3;
+
+	private final CircuitBreaker circuitBreaker;
+	private final CircuitBreakerStateStore store;
+	private final String nodeId;
+	private final long staleAfterMillis;
+	private final LongAdder successfulCalls = new LongAdder();
+	private final LongAdder failedCalls = new LongAdder();
+	private final ScheduledExecutorService publisher;
+	private volatile boolean closed = false;
+	// set while this class opens the circuit, to distinguish from opens by the breaker's own failures
+	private volatile Thread openingThread;
+	private volatile long locallyOpenedAtMillis = 0;
+	private volatile long lastClosedAtMillis = 0;
+
+	/**
+	 * Starts sharing state for the circuit breaker.
+	 *
+	 * @param circuitBreaker  the local circuit breaker
+	 * @param store           where to publish and read state
+	 * @param nodeId          unique identifier of this node, e.g. the hostname
+	 * @param publishInterval how often to publish this node's statistics and read other nodes'
+	 */
+	public SharedCircuitBreakerState(CircuitBreaker circuitBreaker, CircuitBreakerStateStore store, String nodeId,
+			Duration publishInterval) {
+		if (publishInterval.isZero() || publishInterval.isNegative()) {
+			throw new IllegalArgumentException("publishInterval must be positive but was " + publishInterval);
+		}
+		this.circuitBreaker = circuitBreaker;
+		this.store = store;
+		this.nodeId = nodeId;
+		this.staleAfterMillis = publishInterval.toMillis() * STALE_INTERVALS;
+		circuitBreaker.getEventPublisher().onSuccess(e -> successfulCalls.increment());
+		circuitBreaker.getEventPublisher().onError(e -> failedCalls.increment());
+		circuitBreaker.getEventPublisher().onStateTransition(this::onStateTransition);
+		this.publisher = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "circuit-breaker-state-" + circuitBreaker.getName());
+			t.setDaemon(true);
+			return t;
+		});
+		long intervalMillis = publishInterval.toMillis();
+		publisher.scheduleWithFixedDelay(this::syncQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+	}
+
+	private void onStateTransition(CircuitBreakerOnStateTransitionEvent event) {
+		State toState = event.getStateTransition().getToState();
+		if (toState == State.OPEN) {
+			locallyOpenedAtMillis = openingThread == Thread.currentThread() ? 0 : System.currentTimeMillis();
+			return;
+		}
+		locallyOpenedAtMillis = 0;
+		if (toState == State.CLOSED) {
+			// counts from before recovery mustn't re-open the circuit
+			successfulCalls.reset();
+			failedCalls.reset();
+			lastClosedAtMillis = System.currentTimeMillis();
+		}
+	}
+
+	private void syncQuietly() {
+		try {
+			sync();
+		} catch (RuntimeException e) {
+			log.warn("Could not share state of circuit breaker {}: {}", circuitBreaker.getName(), e.getMessage());
+		}
+	}
+
+	/**
+	 * Publishes counts since the last sync, then updates the local circuit breaker from the cluster's states.
+	 */
+	void sync() {
+		if (closed) {
+			return;
+		}
+		long now = System.currentTimeMillis();
+		store.publish(new BreakerNodeState(circuitBreaker.getName(), nodeId, successfulCalls.sumThenReset(),
+				failedCalls.sumThenReset(), isOpen(circuitBreaker.getState()), locallyOpenedAtMillis, now));
+		if (circuitBreaker.getState() != State.CLOSED) {
+			return;
+		}
+		long closedAt = lastClosedAtMillis;
+		List<BreakerNodeState> states = store.getStates(circuitBreaker.getName());
+		long successes = 0;
+		long failures = 0;
+		String openNode = null;
+		for (BreakerNodeState state : states) {
+			if (now - state.getTimestampMillis() > staleAfterMillis || state.getTimestampMillis() < closedAt) {
+				continue;
+			}
+			successes += state.getSuccessfulCalls();
+			failures += state.getFailedCalls();
+			if (state.isOpen() && state.getLocallyOpenedAtMillis() > closedAt && !nodeId.equals(state.getNodeId())) {
+				openNode = state.getNodeId();
+			}
+		}
+		if (openNode != null) {
+			log.warn("Opening circuit breaker {} as it is open on node {}", circuitBreaker.getName(), openNode);
+			openCircuit();
+		} else if (isClusterFailureRateExceeded(successes, failures)) {
+			log.warn("Opening circuit breaker {} as {} of {} calls across the cluster failed",
+					circuitBreaker.getName(), failures, successes + failures);
+			openCircuit();
+		}
+	}
+
+	private void openCircuit() {
+		openingThread = Thread.currentThread();
+		try {
+			circuitBreaker.transitionToOpenState();
+		} finally {
+			openingThread = null;
+		}
+	}
+
+	private boolean isClusterFailureRateExceeded(long successes, long failures) {
+		CircuitBreakerConfig config = circuitBreaker.getCircuitBreakerConfig();
+		long total = successes + failures;
+		if (total == 0 || total < config.getMinimumNumberOfCalls()) {
+			return false;
+		}
+		return failures * 100f / total >= config.getFailureRateThreshold();
+	}
+
+	private static boolean isOpen(State state) {
+		return state == State.OPEN || state == State.FORCED_OPEN;
+	}
+
+	/**
+	 * Stops publishing and consuming state. The local circuit breaker continues to work independently.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		publisher.shutdownNow();
+	}
+
+}
@@ -1,6 +1,7 @@
 package com.researchspace.apiutils.rest.utils;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.function.Supplier;
 
 import org.springframework.http.ResponseEntity;
@@ -11,25 +12,33 @@ import com.researchspace.apiutils.ApiError;
 
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
-import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnCallNotPermittedEvent;
 import io.github.resilience4j.core.IntervalFunction;
 import io.github.resilience4j.decorators.Decorators;
 import io.github.resilience4j.retry.Retry;
 import io.github.resilience4j.retry.RetryConfig;
-import io.github.resilience4j.retry.event.RetryOnErrorEvent;
 import io.vavr.control.Either;
 import io.vavr.control.Try;
 import lombok.AllArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 /**
  * Builds a 2-step resilience mechanism for clients, using a 3x Retry wrapped around a CircuitBreaker.
  * <br/>
- * Resilience failure events are logged.
+ * Resilience failure events are logged asynchronously, see {@link #getRecentEvents(int)}. Facades created with
+ * the constructor taking a Retry and CircuitBreaker are not registered with the {@link ResilienceEventPipeline};
+ * register them explicitly if their events are needed.
  */
-@Slf4j
 @AllArgsConstructor
 public class SimpleResilienceFacade {
 
+	/**
+	 * Calls taking longer than this are considered slow by the circuit breaker
+	 */
+	public static final Duration SLOW_CALL_DURATION_THRESHOLD = Duration.ofSeconds(20);
+
+	/**
+	 * Name of the retry and circuit breaker created by {@link #SimpleResilienceFacade(long, int)}
+	 */
+	public static final String DEFAULT_DOWNSTREAM_NAME = "snapgene";
+
 	Retry retry = null;
 	CircuitBreaker circuitBreaker = null;
 	
@@ -45,22 +54,41 @@ public class SimpleResilienceFacade {
 	 * @param circuitBreakerWindowSize  Window size of circuit-breaker
 	 */
 	public SimpleResilienceFacade(long delayBetweenRetriesMillis, int circuitBreakerWindowSize) {
+		this(DEFAULT_DOWNSTREAM_NAME, delayBetweenRetriesMillis, circuitBreakerWindowSize);
+	}
+
+	/**
+	 * As {@link #SimpleResilienceFacade(long, int)}, for a named downstream service. The name identifies
+	 * this facade's circuit breaker when sharing state between nodes, so each downstream service should
+	 * have a distinct name.
+	 * 
+	 * @param downstreamName            name of the downstream service, e.g. "snapgene"
+	 * @param delayBetweenRetriesMillis millis between retries following failed
+	 *                                  attempts
+	 * @param circuitBreakerWindowSize  Window size of circuit-breaker
+	 */
+	public SimpleResilienceFacade(String downstreamName, long delayBetweenRetriesMillis,
+			int circuitBreakerWindowSize) {
+		if (downstreamName == null || downstreamName.isEmpty()) {
+			throw new IllegalArgumentException("downstreamName cannot be empty");
+		}
 		RetryConfig retryCfg = RetryConfig.custom().retryExceptions(HttpServerErrorException.class).maxAttempts(3)
 				.intervalFunction(IntervalFunction.ofExponentialBackoff(Duration.ofMillis(delayBetweenRetriesMillis)))
 				.build();
 		CircuitBreakerConfig circuitBreakerConfig = CircuitBreakerConfig.from(CircuitBreakerConfig.ofDefaults())
-				.slowCallRateThreshold(50).slowCallDurationThreshold(Duration.ofSeconds(20))
+				.slowCallRateThreshold(50).slowCallDurationThreshold(SLOW_CALL_DURATION_THRESHOLD)
 				.slidingWindowSize(circuitBreakerWindowSize)
 				.ignoreExceptions(HttpClientErrorException.class)
 				.build();
-		createResilience(retryCfg, circuitBreakerConfig);
+		createResilience(downstreamName, retryCfg, circuitBreakerConfig);
 	}
 	
-	private void createResilience(RetryConfig retryCfg, CircuitBreakerConfig circuitBreakerConfig) {
-		this.retry = Retry.of("snapgene", retryCfg);
-		retry.getEventPublisher().onError(this::logRetryEvent);
-		this.circuitBreaker = CircuitBreaker.of("snapgene", circuitBreakerConfig);
-		circuitBreaker.getEventPublisher().onCallNotPermitted(this::logCallNotPermitted);
+	private void createResilience(String downstreamName, RetryConfig retryCfg,
+			CircuitBreakerConfig circuitBreakerConfig) {
+		this.retry = Retry.of(downstreamName, retryCfg);
+		this.circuitBreaker = CircuitBreaker.of(downstreamName, circuitBreakerConfig);
+		ResilienceEventPipeline.getDefault().register(retry);
+		ResilienceEventPipeline.getDefault().register(circuitBreaker);
 	}
 
 	/**
@@ -75,14 +103,31 @@ public class SimpleResilienceFacade {
 		return Try.ofSupplier(decorated).toEither().map(ResponseEntity::getBody).mapLeft(RestUtil::fromException);
 	}
 
-	private void logRetryEvent(RetryOnErrorEvent event) {
-		log.error("Problem with call to {}, retrying: {}", event.getName(),
-				RestUtil.fromException(event.getLastThrowable()) + ", message: " + event.getLastThrowable().getMessage());
+	/**
+	 * Shares this facade's circuit-breaker state with other nodes, so that the circuit opens on all nodes
+	 * when the downstream service is failing across the cluster.
+	 * 
+	 * @param store           where state is published and read
+	 * @param nodeId          unique identifier of this node
+	 * @param publishInterval how often state is exchanged with the store
+	 * @return the shared state, which should be closed on shutdown
+	 */
+	public SharedCircuitBreakerState shareCircuitBreakerState(CircuitBreakerStateStore store, String nodeId,
+			Duration publishInterval) {
+		return new SharedCircuitBreakerState(circuitBreaker, store, nodeId, publishInterval);
 	}
 
-	private void logCallNotPermitted(CircuitBreakerOnCallNotPermittedEvent event) {
-		log.error("Circuit breaker prevented call to {} - is either slow or unavailable",
-				event.getCircuitBreakerName());
+	/**
+	 * Retry and circuit-breaker events are handled asynchronously by the default {@link ResilienceEventPipeline},
+	 * which keeps events per downstream name. Facades created with the same downstream name therefore share
+	 * their event history.
+	 * 
+	 * @param n maximum number of events to return
+	 * @return up to <code>n</code> of the most recent resilience events for this facade's downstream service,
+	 *         newest first
+	 */
+	public List<ResilienceEvent> getRecentEvents(int n) {
+		return ResilienceEventPipeline.getDefault().getRecentEvents(circuitBreaker.getName(), n);
 	}
 
 }
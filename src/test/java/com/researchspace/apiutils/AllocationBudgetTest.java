@@ -0,0 +1,353 @@
+package com.researchspace.apiutils;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.ConstraintViolationException;
+import javax.validation.Path;
+import javax.validation.metadata.ConstraintDescriptor;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.TypeMismatchException;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.BindException;
+import org.springframework.validation.BindingResult;
+import org.springframework.validation.FieldError;
+import org.springframework.validation.ObjectError;
+import org.springframework.web.HttpMediaTypeNotSupportedException;
+import org.springframework.web.HttpRequestMethodNotSupportedException;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+import org.springframework.web.bind.MissingServletRequestParameterException;
+import org.springframework.web.bind.ServletRequestBindingException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.method.annotation.MethodArgumentConversionNotSupportedException;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import org.springframework.web.multipart.support.MissingServletRequestPartException;
+import org.springframework.web.servlet.NoHandlerFoundException;
+
+import com.researchspace.apiutils.rest.utils.RestUtil;
+import com.researchspace.core.util.JacksonUtil;
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+/**
+ * Guards against regressions in the amount of garbage produced by error handling.<br>
+ * Each case measures the mean number of bytes allocated on the current thread per invocation, after a warm-up,
+ * and fails if it exceeds the recorded budget. Logging is stubbed out, so budgets don't depend on the logging
+ * backend; if a change legitimately needs more, re-measure and raise the budget deliberately.
+ */
+class AllocationBudgetTest {
+
+	static final int WARMUP_ITERATIONS = 2_000;
+	static final int MEASURED_ITERATIONS = 1_000;
+
+	// budgets, in bytes per invocation: about 25% above the highest of 3 runs on JDK 17 and Spring 5.3,
+	// with compressed oops and logging stubbed out (measured values in comments)
+	static final long API_ERROR_BUDGET = 896; // 664
+	static final long FROM_EXCEPTION_DEFAULT_BUDGET = 1024; // 784
+	static final long FROM_EXCEPTION_JSON_BUDGET = 1920; // 1488
+	static final long METHOD_ARGUMENT_NOT_VALID_BUDGET = 5952; // 4720
+	static final long BIND_BUDGET = 2304; // 1824
+	static final long TYPE_MISMATCH_BUDGET = 1920; // 1480
+	static final long MISSING_PARAMETER_BUDGET = 2304; // 1744
+	static final long MISSING_PART_BUDGET = 1664; // 1264
+	static final long NOT_READABLE_BUDGET = 1536; // 1200
+	static final long NO_HANDLER_BUDGET = 1664; // 1280
+	static final long METHOD_NOT_SUPPORTED_BUDGET = 2304; // 1784
+	static final long MEDIA_TYPE_NOT_SUPPORTED_BUDGET = 1920; // 1536
+	static final long REQUEST_BINDING_BUDGET = 1408; // 1080
+	static final long CONSTRAINT_VIOLATION_BUDGET = 1536; // 1192
+	// handleAll cases other than ConstraintViolationException
+	static final long MAPPED_EXCEPTION_BUDGET = 1280; // 1016
+
+	com.sun.management.ThreadMXBean threadBean;
+	RestControllerAdvice advice;
+	WebRequest request;
+	// keeps results reachable so allocations can't be optimised away
+	Object sink;
+
+	@BeforeEach
+	void setup() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof com.sun.management.ThreadMXBean, "Thread allocation counters unavailable");
+		threadBean = (com.sun.management.ThreadMXBean) bean;
+		assumeTrue(threadBean.isThreadAllocatedMemorySupported(), "Thread allocation counters unsupported");
+		threadBean.setThreadAllocatedMemoryEnabled(true);
+		// budgets were measured with compressed object pointers, which are disabled by default for heaps over 32GB
+		HotSpotDiagnosticMXBean hotSpot = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+		assumeTrue(hotSpot != null && Boolean.parseBoolean(hotSpot.getVMOption("UseCompressedOops").getValue()),
+				"Budgets assume compressed oops");
+		// logging is stubbed out: its cost depends on the logging backend, and stack traces would flood test output
+		advice = new RestControllerAdvice() {
+			@Override
+			protected void logException(Exception ex) {
+			}
+
+			@Override
+			protected void logStackTrace(Exception ex) {
+			}
+		};
+		request = Mockito.mock(WebRequest.class);
+	}
+
+	@Test
+	void apiErrorConstruction() {
+		assertWithinBudget("ApiError construction", API_ERROR_BUDGET,
+				() -> new ApiError(HttpStatus.BAD_REQUEST, ApiErrorCodes.ILLEGAL_ARGUMENT.getCode(), "message",
+						"errorMsg"));
+	}
+
+	@Test
+	void fromExceptionDefault() {
+		IllegalStateException ex = new IllegalStateException("some error");
+		assertWithinBudget("RestUtil.fromException (default)", FROM_EXCEPTION_DEFAULT_BUDGET,
+				() -> RestUtil.fromException(ex));
+	}
+
+	@Test
+	void fromExceptionWithJsonBody() {
+		ApiError error = new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, ApiErrorCodes.GENERAL_ERROR.getCode(),
+				"message", "errorMsg");
+		HttpServerErrorException ex = new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "some error",
+				JacksonUtil.toJson(error).getBytes(), Charset.defaultCharset());
+		assertWithinBudget("RestUtil.fromException (JSON body)", FROM_EXCEPTION_JSON_BUDGET,
+				() -> RestUtil.fromException(ex));
+	}
+
+	@Test
+	void handleMethodArgumentNotValid() throws NoSuchMethodException {
+		MethodParameter param = new MethodParameter(getClass().getDeclaredMethod("sampleHandler", String.class), 0);
+		MethodArgumentNotValidException ex = new MethodArgumentNotValidException(param, twoErrorBindingResult());
+		assertWithinBudget("handleMethodArgumentNotValid", METHOD_ARGUMENT_NOT_VALID_BUDGET,
+				() -> advice.handleMethodArgumentNotValid(ex, new HttpHeaders(), HttpStatus.BAD_REQUEST, request));
+	}
+
+	@Test
+	void handleBindException() {
+		BindException ex = new BindException(twoErrorBindingResult());
+		assertWithinBudget("handleBindException", BIND_BUDGET,
+				() -> advice.handleBindException(ex, new HttpHeaders(), HttpStatus.BAD_REQUEST, request));
+	}
+
+	@Test
+	void handleTypeMismatch() {
+		TypeMismatchException ex = new TypeMismatchException("abc", Integer.class);
+		assertWithinBudget("handleTypeMismatch", TYPE_MISMATCH_BUDGET,
+				() -> advice.handleTypeMismatch(ex, new HttpHeaders(), HttpStatus.BAD_REQUEST, request));
+	}
+
+	@Test
+	void handleMissingServletRequestParameter() {
+		MissingServletRequestParameterException ex = new MissingServletRequestParameterException("id", "Long");
+		assertWithinBudget("handleMissingServletRequestParameter", MISSING_PARAMETER_BUDGET,
+				() -> advice.handleMissingServletRequestParameter(ex, new HttpHeaders(), HttpStatus.BAD_REQUEST,
+						request));
+	}
+
+	@Test
+	void handleMissingServletRequestPart() {
+		MissingServletRequestPartException ex = new MissingServletRequestPartException("file");
+		assertWithinBudget("handleMissingServletRequestPart", MISSING_PART_BUDGET,
+				() -> advice.handleMissingServletRequestPart(ex, new HttpHeaders(), HttpStatus.BAD_REQUEST, request));
+	}
+
+	@Test
+	void handleHttpMessageNotReadable() {
+		HttpMessageNotReadableException ex = new HttpMessageNotReadableException("JSON parse error",
+				Mockito.mock(HttpInputMessage.class));
+		assertWithinBudget("handleHttpMessageNotReadable", NOT_READABLE_BUDGET,
+				() -> advice.handleHttpMessageNotReadable(ex, new HttpHeaders(), HttpStatus.BAD_REQUEST, request));
+	}
+
+	@Test
+	void handleNoHandlerFoundException() {
+		NoHandlerFoundException ex = new NoHandlerFoundException("GET", "/api/v1/unknown", new HttpHeaders());
+		assertWithinBudget("handleNoHandlerFoundException", NO_HANDLER_BUDGET,
+				() -> advice.handleNoHandlerFoundException(ex, new HttpHeaders(), HttpStatus.NOT_FOUND, request));
+	}
+
+	@Test
+	void handleHttpRequestMethodNotSupported() {
+		HttpRequestMethodNotSupportedException ex = new HttpRequestMethodNotSupportedException("PATCH",
+				new String[] { "GET", "POST" });
+		assertWithinBudget("handleHttpRequestMethodNotSupported", METHOD_NOT_SUPPORTED_BUDGET,
+				() -> advice.handleHttpRequestMethodNotSupported(ex, new HttpHeaders(), HttpStatus.METHOD_NOT_ALLOWED,
+						request));
+	}
+
+	@Test
+	void handleHttpMediaTypeNotSupported() {
+		HttpMediaTypeNotSupportedException ex = new HttpMediaTypeNotSupportedException(MediaType.TEXT_PLAIN,
+				Arrays.asList(MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML));
+		assertWithinBudget("handleHttpMediaTypeNotSupported", MEDIA_TYPE_NOT_SUPPORTED_BUDGET,
+				() -> advice.handleHttpMediaTypeNotSupported(ex, new HttpHeaders(),
+						HttpStatus.UNSUPPORTED_MEDIA_TYPE, request));
+	}
+
+	@Test
+	void handleServletRequestBindingException() {
+		ServletRequestBindingException ex = new ServletRequestBindingException("Missing request header 'apiKey'");
+		assertWithinBudget("handleServletRequestBindingException", REQUEST_BINDING_BUDGET,
+				() -> advice.handleServletRequestBindingException(ex, new HttpHeaders(), HttpStatus.BAD_REQUEST,
+						request));
+	}
+
+	@Test
+	void handleConstraintViolation() {
+		ConstraintViolationException ex = new ConstraintViolationException("invalid",
+				Collections.singleton(new StubConstraintViolation()));
+		assertWithinBudget("handleAll (ConstraintViolationException)", CONSTRAINT_VIOLATION_BUDGET,
+				() -> advice.handleAll(ex, request));
+	}
+
+	@Test
+	void handleArgumentConversion() throws NoSuchMethodException {
+		MethodParameter param = new MethodParameter(getClass().getDeclaredMethod("sampleHandler", String.class), 0);
+		MethodArgumentConversionNotSupportedException ex = new MethodArgumentConversionNotSupportedException("abc",
+				Integer.class, "id", param, null);
+		assertWithinBudget("handleAll (MethodArgumentConversionNotSupportedException)", MAPPED_EXCEPTION_BUDGET,
+				() -> advice.handleAll(ex, request));
+	}
+
+	@Test
+	void handleMethodArgumentTypeMismatch() {
+		MethodArgumentTypeMismatchException ex = new MethodArgumentTypeMismatchException("abc", Integer.class, "id",
+				null, null);
+		assertWithinBudget("handleAll (MethodArgumentTypeMismatchException)", MAPPED_EXCEPTION_BUDGET,
+				() -> advice.handleAll(ex, request));
+	}
+
+	@Test
+	void handleIllegalArgument() {
+		IllegalArgumentException ex = new IllegalArgumentException("bad argument");
+		assertWithinBudget("handleAll (IllegalArgumentException)", MAPPED_EXCEPTION_BUDGET,
+				() -> advice.handleAll(ex, request));
+	}
+
+	@Test
+	void handleIO() {
+		IOException ex = new IOException("disk error");
+		assertWithinBudget("handleAll (IOException)", MAPPED_EXCEPTION_BUDGET, () -> advice.handleAll(ex, request));
+	}
+
+	@Test
+	void handleAll() {
+		IllegalStateException ex = new IllegalStateException("unexpected");
+		assertWithinBudget("handleAll", MAPPED_EXCEPTION_BUDGET, () -> advice.handleAll(ex, request));
+	}
+
+	void assertWithinBudget(String name, long budgetBytes, Supplier<?> invocation) {
+		for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+			sink = invocation.get();
+		}
+		long before = threadBean.getCurrentThreadAllocatedBytes();
+		for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+			sink = invocation.get();
+		}
+		long perInvocation = (threadBean.getCurrentThreadAllocatedBytes() - before) / MEASURED_ITERATIONS;
+		assertTrue(perInvocation <= budgetBytes,
+				name + " allocated " + perInvocation + " bytes per invocation, budget is " + budgetBytes);
+	}
+
+	private BindingResult twoErrorBindingResult() {
+		BindingResult br = new BeanPropertyBindingResult("somethingToValidate", "x");
+		br.addError(new FieldError("x", "f1", "f1-error"));
+		br.addError(new ObjectError("x", "x-error"));
+		return br;
+	}
+
+	/**
+	 * Minimal violation, as there's no Bean Validation implementation on the test classpath and mocks would
+	 * dominate the measured allocation
+	 */
+	static class StubConstraintViolation implements ConstraintViolation<String> {
+		static final Path PATH = new Path() {
+			@Override
+			public Iterator<Node> iterator() {
+				return Collections.emptyIterator();
+			}
+
+			@Override
+			public String toString() {
+				return "name";
+			}
+		};
+
+		@Override
+		public String getMessage() {
+			return "must not be blank";
+		}
+
+		@Override
+		public String getMessageTemplate() {
+			return "{javax.validation.constraints.NotBlank.message}";
+		}
+
+		@Override
+		public String getRootBean() {
+			return "";
+		}
+
+		@Override
+		public Class<String> getRootBeanClass() {
+			return String.class;
+		}
+
+		@Override
+		public Object getLeafBean() {
+			return "";
+		}
+
+		@Override
+		public Object[] getExecutableParameters() {
+			return null;
+		}
+
+		@Override
+		public Object getExecutableReturnValue() {
+			return null;
+		}
+
+		@Override
+		public Path getPropertyPath() {
+			return PATH;
+		}
+
+		@Override
+		public Object getInvalidValue() {
+			return "";
+		}
+
+		@Override
+		public ConstraintDescriptor<?> getConstraintDescriptor() {
+			return null;
+		}
+
+		@Override
+		public <U> U unwrap(Class<U> type) {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	// target for MethodParameter construction
+	void sampleHandler(String arg) {
+	}
+
+}
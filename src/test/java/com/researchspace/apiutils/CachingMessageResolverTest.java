@@ -0,0 +1,116 @@
+package com.researchspace.apiutils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Locale;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.MessageSourceResolvable;
+import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.validation.FieldError;
+
+class CachingMessageResolverTest {
+
+	StaticMessageSource messageSource;
+
+	@BeforeEach
+	void setup() {
+		messageSource = new StaticMessageSource();
+		messageSource.addMessage("NotNull.x.f1", Locale.ENGLISH, "f1 is required");
+		messageSource.addMessage("NotNull.x.f1", Locale.GERMAN, "f1 ist erforderlich");
+		messageSource.addMessage("Pattern.x.f1", Locale.ENGLISH, "{0} must match {1}");
+	}
+
+	@Test
+	void resolvedMessagesAreCachedPerLocale() {
+		CachingMessageResolver resolver = new CachingMessageResolver(messageSource, 10);
+		FieldError error = fieldError("f1");
+		assertEquals("f1 is required", resolver.resolve(error, Locale.ENGLISH));
+		assertEquals("f1 is required", resolver.resolve(fieldError("f1"), Locale.ENGLISH));
+		assertEquals("f1 ist erforderlich", resolver.resolve(error, Locale.GERMAN));
+		assertEquals(1, resolver.getHitCount());
+		assertEquals(2, resolver.getMissCount());
+		assertEquals(2, resolver.size());
+	}
+
+	/**
+	 * Like the wrapper SpringValidatorAdapter uses for String constraint attributes, e.g. <code>@Pattern.regexp</code>,
+	 * this doesn't define equals
+	 */
+	static class ResolvableAttribute implements MessageSourceResolvable {
+		final String value;
+
+		ResolvableAttribute(String value) {
+			this.value = value;
+		}
+
+		@Override
+		public String[] getCodes() {
+			return new String[] { value };
+		}
+
+		@Override
+		public Object[] getArguments() {
+			return null;
+		}
+
+		@Override
+		public String getDefaultMessage() {
+			return value;
+		}
+	}
+
+	@Test
+	void resolvableArgumentsWithoutEqualsAreCached() {
+		CachingMessageResolver resolver = new CachingMessageResolver(messageSource, 10);
+		for (int i = 0; i < 3; i++) {
+			Object[] args = { new DefaultMessageSourceResolvable(new String[] { "x.f1", "f1" }, "f1"),
+					new ResolvableAttribute("^[a-z]+$") };
+			FieldError error = new FieldError("x", "f1", "A1", false, new String[] { "Pattern.x.f1" }, args, "default");
+			assertEquals("f1 must match ^[a-z]+$", resolver.resolve(error, Locale.ENGLISH));
+		}
+		assertEquals(1, resolver.size());
+		assertEquals(2, resolver.getHitCount());
+	}
+
+	@Test
+	void clearEmptiesCacheAndBoundStillApplies() {
+		CachingMessageResolver resolver = new CachingMessageResolver(messageSource, 2);
+		resolver.resolve(fieldError("f1"), Locale.ENGLISH);
+		resolver.clear();
+		assertEquals(0, resolver.size());
+		for (int i = 0; i < 5; i++) {
+			resolver.resolve(fieldError("f" + i), Locale.ENGLISH);
+		}
+		assertEquals(2, resolver.size());
+	}
+
+	@Test
+	void unresolvableCodeFallsBackToDefaultMessage() {
+		CachingMessageResolver resolver = new CachingMessageResolver(messageSource, 10);
+		assertEquals("default", resolver.resolve(fieldError("unknown"), Locale.ENGLISH));
+	}
+
+	@Test
+	void cacheIsBounded() {
+		CachingMessageResolver resolver = new CachingMessageResolver(messageSource, 2);
+		for (int i = 0; i < 5; i++) {
+			resolver.resolve(fieldError("f" + i), Locale.ENGLISH);
+		}
+		assertEquals(2, resolver.size());
+		assertEquals(3, resolver.getEvictionCount());
+	}
+
+	@Test
+	void invalidMaxSizeRejected() {
+		assertThrows(IllegalArgumentException.class, () -> new CachingMessageResolver(messageSource, 0));
+	}
+
+	private FieldError fieldError(String field) {
+		return new FieldError("x", field, null, false, new String[] { "NotNull.x." + field }, null, "default");
+	}
+
+}
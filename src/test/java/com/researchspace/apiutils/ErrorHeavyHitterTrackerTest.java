@@ -0,0 +1,74 @@
+package com.researchspace.apiutils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.BindException;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.HandlerMapping;
+
+import com.researchspace.apiutils.HeavyHitters.HeavyHitter;
+
+class ErrorHeavyHitterTrackerTest {
+
+	@Test
+	void heavyHittersReportsHeaviestKeys() {
+		HeavyHitters heavyHitters = new HeavyHitters(3, 256);
+		for (int i = 0; i < 1000; i++) {
+			heavyHitters.record("key-" + i);
+			if (i % 2 == 0) {
+				heavyHitters.record("heavy");
+			}
+			if (i % 4 == 0) {
+				heavyHitters.record("medium");
+			}
+		}
+		List<HeavyHitter> top = heavyHitters.top();
+		assertEquals("heavy", top.get(0).getKey());
+		assertTrue(top.get(0).getEstimatedCount() >= 500);
+		assertEquals("medium", top.get(1).getKey());
+
+		heavyHitters.reset();
+		assertTrue(heavyHitters.top().isEmpty());
+		assertEquals(0, heavyHitters.estimate("heavy"));
+	}
+
+	@Test
+	void adviceRecordsErrorsByClientPathAndCode() {
+		ErrorHeavyHitterTracker tracker = new ErrorHeavyHitterTracker();
+		RestControllerAdvice advice = new RestControllerAdvice() {
+			@Override
+			protected ErrorHeavyHitterTracker getErrorTracker() {
+				return tracker;
+			}
+		};
+		WebRequest request = Mockito.mock(WebRequest.class);
+		Mockito.when(request.getHeader("apiKey")).thenReturn("abcdefghijkl");
+		Mockito.when(request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE,
+				RequestAttributes.SCOPE_REQUEST)).thenReturn("/api/v1/documents/{id}");
+
+		advice.handleAll(new IllegalArgumentException("bad"), request);
+		advice.handleAll(new IllegalArgumentException("bad"), request);
+		advice.handleBindException(new BindException(new BeanPropertyBindingResult("x", "x")), new HttpHeaders(),
+				HttpStatus.BAD_REQUEST, request);
+
+		ErrorHeavyHitterTracker.Snapshot snapshot = tracker.snapshot();
+		HeavyHitter client = snapshot.getClients().get(0);
+		assertEquals(3, client.getEstimatedCount());
+		assertTrue(client.getKey().startsWith("apiKey:abcd"));
+		assertFalse(client.getKey().contains("abcdefghijkl"));
+		assertEquals(new HeavyHitter("/api/v1/documents/{id}", 3), snapshot.getPaths().get(0));
+		assertEquals(new HeavyHitter(ApiErrorCodes.ILLEGAL_ARGUMENT.name(), 2), snapshot.getErrorCodes().get(0));
+		assertEquals(new HeavyHitter(ApiErrorCodes.INVALID_FIELD.name(), 1), snapshot.getErrorCodes().get(1));
+	}
+
+}
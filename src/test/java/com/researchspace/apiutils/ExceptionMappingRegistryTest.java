@@ -0,0 +1,61 @@
+package com.researchspace.apiutils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.FileNotFoundException;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.WebRequest;
+
+class ExceptionMappingRegistryTest {
+
+	static class ResourceMissingException extends IllegalArgumentException {
+		ResourceMissingException(String msg) {
+			super(msg);
+		}
+	}
+
+	@Test
+	void resolvesNearestMappedSuperclass() {
+		ExceptionMappingRegistry registry = ExceptionMappingRegistry.withDefaults();
+		assertEquals(ApiErrorCodes.IO, registry.resolve(FileNotFoundException.class).getCode());
+		assertEquals(ApiErrorCodes.ILLEGAL_ARGUMENT, registry.resolve(ResourceMissingException.class).getCode());
+		assertEquals(ApiErrorCodes.GENERAL_ERROR, registry.resolve(IllegalStateException.class).getCode());
+		assertNull(registry.resolve(StackOverflowError.class));
+	}
+
+	@Test
+	void registeringMappingReplacesMemoizedResolution() {
+		ExceptionMappingRegistry registry = ExceptionMappingRegistry.withDefaults();
+		assertEquals(ApiErrorCodes.ILLEGAL_ARGUMENT, registry.resolve(ResourceMissingException.class).getCode());
+		registry.register(ResourceMissingException.class, HttpStatus.NOT_FOUND, ApiErrorCodes.RESOURCE_NOT_FOUND,
+				ex -> "Resource not found");
+		assertEquals(ApiErrorCodes.RESOURCE_NOT_FOUND, registry.resolve(ResourceMissingException.class).getCode());
+	}
+
+	@Test
+	void adviceUsesProjectMappings() {
+		RestControllerAdvice advice = new RestControllerAdvice() {
+			{
+				getExceptionMappings().register(ResourceMissingException.class, HttpStatus.NOT_FOUND,
+						ApiErrorCodes.RESOURCE_NOT_FOUND, ex -> "Resource not found");
+			}
+		};
+		WebRequest request = Mockito.mock(WebRequest.class);
+
+		ResponseEntity<Object> notFound = advice.handleAll(new ResourceMissingException("doc 3"), request);
+		ApiError error = (ApiError) notFound.getBody();
+		assertEquals(HttpStatus.NOT_FOUND, notFound.getStatusCode());
+		assertEquals(ApiErrorCodes.RESOURCE_NOT_FOUND.getCode(), error.getInternalCode());
+		assertEquals("doc 3", error.getMessage());
+		assertEquals("Resource not found", error.getErrors().get(0));
+
+		ResponseEntity<Object> illegal = advice.handleAll(new IllegalArgumentException("bad"), request);
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, illegal.getStatusCode());
+	}
+
+}
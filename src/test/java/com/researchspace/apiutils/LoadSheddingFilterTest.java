@@ -0,0 +1,186 @@
+package com.researchspace.apiutils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.springframework.web.servlet.HandlerMapping;
+
+class LoadSheddingFilterTest {
+
+	@Test
+	void concurrentRequestsOverLimitAreRejected() throws ServletException, IOException {
+		LoadSheddingFilter filter = new LoadSheddingFilter(1);
+		HttpServletResponse rejected = Mockito.mock(HttpServletResponse.class);
+		ByteArrayOutputStream body = mockOutput(rejected);
+		// 2nd request to the same route arrives while the 1st is in flight
+		FilterChain chain = (req, resp) -> filter.doFilterInternal(mockRequest("/api/docs"), rejected,
+				Mockito.mock(FilterChain.class));
+		filter.doFilterInternal(mockRequest("/api/docs"), Mockito.mock(HttpServletResponse.class), chain);
+
+		verify(rejected).setStatus(503);
+		verify(rejected).setHeader("Retry-After", "1");
+		assertTrue(body.toString("UTF-8").contains("\"internalCode\":" + ApiErrorCodes.CONFIGURED_UNAVAILABLE.getCode()));
+		assertEquals(1, filter.getAdmittedCount());
+		assertEquals(1, filter.getRejectedConcurrencyCount());
+		assertEquals(0, filter.getInFlight("route:/api/docs"));
+	}
+
+	@Test
+	void differentRoutesHaveSeparateLimits() throws ServletException, IOException {
+		LoadSheddingFilter filter = new LoadSheddingFilter(1);
+		FilterChain inner = Mockito.mock(FilterChain.class);
+		FilterChain chain = (req, resp) -> filter.doFilterInternal(mockRequest("/api/files"),
+				Mockito.mock(HttpServletResponse.class), inner);
+		filter.doFilterInternal(mockRequest("/api/docs"), Mockito.mock(HttpServletResponse.class), chain);
+		assertEquals(2, filter.getAdmittedCount());
+	}
+
+	@Test
+	void requestsAreGroupedByRouteTemplate() throws ServletException, IOException {
+		LoadSheddingFilter filter = new LoadSheddingFilter(1);
+		HttpServletResponse rejected = Mockito.mock(HttpServletResponse.class);
+		mockOutput(rejected);
+		FilterChain chain = (req, resp) -> filter.doFilterInternal(mockRequest("/api/v1/documents/456"), rejected,
+				Mockito.mock(FilterChain.class));
+		filter.doFilterInternal(mockRequest("/api/v1/documents/123"), Mockito.mock(HttpServletResponse.class), chain);
+		verify(rejected).setStatus(503);
+
+		assertEquals("/api/v1/folders/{id}/{id}/files", LoadSheddingFilter.DEFAULT_PATH_NORMALISER
+				.apply("/api/v1/folders/FL12/3fa85f64-5717-4562-b3fc-2c963f66afa6/files"));
+		HttpServletRequest mapped = mockRequest("/api/v1/documents/123");
+		Mockito.when(mapped.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE))
+				.thenReturn("/api/v1/documents/{docId}");
+		assertEquals("route:/api/v1/documents/{docId}", LoadSheddingFilter.BY_ROUTE.apply(mapped));
+	}
+
+	@Test
+	void newKeysShareOverflowLimitsUntilIdleKeysExpire() throws ServletException, IOException, InterruptedException {
+		LoadSheddingFilter filter = new LoadSheddingFilter(1, 0, 1, LoadSheddingFilter.BY_ROUTE, 2,
+				Duration.ofMillis(50));
+		FilterChain chain = Mockito.mock(FilterChain.class);
+		filter.doFilterInternal(mockRequest("/a"), Mockito.mock(HttpServletResponse.class), chain);
+		filter.doFilterInternal(mockRequest("/b"), Mockito.mock(HttpServletResponse.class), chain);
+		assertEquals(2, filter.getTrackedKeyCount());
+
+		// further keys share the overflow limits: of concurrent requests for 2 new keys, only 1 is admitted
+		HttpServletResponse rejected = Mockito.mock(HttpServletResponse.class);
+		mockOutput(rejected);
+		FilterChain nested = (req, resp) -> filter.doFilterInternal(mockRequest("/d"), rejected, chain);
+		filter.doFilterInternal(mockRequest("/c"), Mockito.mock(HttpServletResponse.class), nested);
+		verify(rejected).setStatus(503);
+		assertEquals(3, filter.getAdmittedCount());
+		assertEquals(1, filter.getRejectedConcurrencyCount());
+		assertEquals(2, filter.getUntrackedCount());
+		assertEquals(2, filter.getTrackedKeyCount());
+		// tracked keys keep their own limits
+		filter.doFilterInternal(mockRequest("/a"), Mockito.mock(HttpServletResponse.class), chain);
+		assertEquals(4, filter.getAdmittedCount());
+
+		Thread.sleep(100);
+		filter.doFilterInternal(mockRequest("/c"), Mockito.mock(HttpServletResponse.class), chain);
+		assertEquals(2, filter.getUntrackedCount());
+		assertEquals(1, filter.getTrackedKeyCount());
+	}
+
+	@Test
+	void apiKeysAreHashedAndSeparateFromRoutes() throws ServletException, IOException {
+		HttpServletRequest request = mockRequest("/api/v1/documents/1");
+		Mockito.when(request.getHeader("apiKey")).thenReturn("/api/v1/documents/{id}");
+		String key = LoadSheddingFilter.BY_API_KEY.apply(request);
+		assertTrue(key.startsWith("apiKey:"));
+		assertFalse(key.contains("/api/v1/documents"));
+		assertEquals(key, LoadSheddingFilter.BY_API_KEY.apply(request));
+
+		LoadSheddingFilter filter = new LoadSheddingFilter(1, 0, 1, LoadSheddingFilter.BY_API_KEY, 10);
+		HttpServletRequest noApiKey = mockRequest("/api/v1/documents/2");
+		Mockito.when(noApiKey.getHeader("apiKey")).thenReturn(null);
+		FilterChain chain = (req, resp) -> filter.doFilterInternal(noApiKey, Mockito.mock(HttpServletResponse.class),
+				Mockito.mock(FilterChain.class));
+		filter.doFilterInternal(request, Mockito.mock(HttpServletResponse.class), chain);
+		assertEquals(2, filter.getAdmittedCount());
+	}
+
+	@Test
+	void asyncRequestHoldsSlotUntilComplete() throws ServletException, IOException {
+		LoadSheddingFilter filter = new LoadSheddingFilter(1);
+		HttpServletRequest request = mockRequest("/api/docs");
+		AsyncContext asyncContext = Mockito.mock(AsyncContext.class);
+		Mockito.when(request.isAsyncStarted()).thenReturn(true);
+		Mockito.when(request.getAsyncContext()).thenReturn(asyncContext);
+		filter.doFilterInternal(request, Mockito.mock(HttpServletResponse.class), Mockito.mock(FilterChain.class));
+		assertEquals(1, filter.getInFlight("route:/api/docs"));
+
+		ArgumentCaptor<AsyncListener> listener = ArgumentCaptor.forClass(AsyncListener.class);
+		verify(asyncContext).addListener(listener.capture());
+		listener.getValue().onComplete(null);
+		listener.getValue().onError(null);
+		assertEquals(0, filter.getInFlight("route:/api/docs"));
+	}
+
+	@Test
+	void requestsOverRateAreRejected() throws ServletException, IOException {
+		LoadSheddingFilter filter = new LoadSheddingFilter(10, 0.1, 2, LoadSheddingFilter.BY_API_KEY, 10);
+		FilterChain chain = Mockito.mock(FilterChain.class);
+		for (int i = 0; i < 2; i++) {
+			filter.doFilterInternal(mockRequest("/api/docs"), Mockito.mock(HttpServletResponse.class), chain);
+		}
+		HttpServletResponse rejected = Mockito.mock(HttpServletResponse.class);
+		ByteArrayOutputStream body = mockOutput(rejected);
+		FilterChain notCalled = Mockito.mock(FilterChain.class);
+		filter.doFilterInternal(mockRequest("/api/docs"), rejected, notCalled);
+
+		verify(notCalled, never()).doFilter(Mockito.any(), Mockito.any());
+		verify(rejected).setStatus(429);
+		assertTrue(body.toString("UTF-8").contains("\"internalCode\":" + ApiErrorCodes.TOOMANY_REQUESTS.getCode()));
+		assertEquals(2, filter.getAdmittedCount());
+		assertEquals(1, filter.getRejectedRateCount());
+	}
+
+	private HttpServletRequest mockRequest(String uri) {
+		HttpServletRequest request = Mockito.mock(HttpServletRequest.class);
+		Mockito.when(request.getRequestURI()).thenReturn(uri);
+		Mockito.when(request.getContextPath()).thenReturn("");
+		Mockito.when(request.getHeader("apiKey")).thenReturn("key1");
+		return request;
+	}
+
+	private ByteArrayOutputStream mockOutput(HttpServletResponse response) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Mockito.when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+			@Override
+			public void write(int b) {
+				bytes.write(b);
+			}
+
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+
+			@Override
+			public void setWriteListener(WriteListener writeListener) {
+			}
+		});
+		return bytes;
+	}
+
+}
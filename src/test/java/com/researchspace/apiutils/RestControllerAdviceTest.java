@@ -2,9 +2,13 @@ package com.researchspace.apiutils;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.io.IOException;
+import java.util.Locale;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
+import org.springframework.context.support.StaticMessageSource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -34,6 +38,64 @@ class RestControllerAdviceTest {
 		assertEquals(2, dataBindErrorList.getValidationErrors().size());
 	}
 
+	@Test
+	void testHandleBindExceptionWithMessageResolver (){
+		StaticMessageSource messageSource = new StaticMessageSource();
+		messageSource.addMessage("f1.invalid", Locale.ENGLISH, "resolved-f1-error");
+		CachingMessageResolver resolver = new CachingMessageResolver(messageSource);
+		RestControllerAdvice advice = new RestControllerAdvice() {
+			@Override
+			protected CachingMessageResolver getMessageResolver() {
+				return resolver;
+			}
+		};
+		Mockito.when(request.getLocale()).thenReturn(Locale.ENGLISH);
+		BindingResult br = new BeanPropertyBindingResult("somethingToValidate", "x");
+		br.addError(new FieldError("x", "f1", null, false, new String[] {"f1.invalid"}, null, "f1-error"));
+		ResponseEntity<Object> resultEntity = advice.handleBindException(new BindException(br), new HttpHeaders(),
+				HttpStatus.BAD_REQUEST, request);
+		ApiError error = (ApiError)resultEntity.getBody();
+		assertEquals("f1: resolved-f1-error", error.getErrors().get(0));
+		BindErrorList dataBindErrorList = (BindErrorList)error.getData();
+		assertEquals("resolved-f1-error", dataBindErrorList.getValidationErrors().get(0).getMessage());
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	void deprecatedHandlersDelegateToMappings (){
+		RestControllerAdvice advice = new RestControllerAdvice() {};
+		ApiError error = (ApiError) advice.handleIllegalArgumen(new IllegalArgumentException("bad"), request).getBody();
+		assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, error.getStatus());
+		assertEquals(ApiErrorCodes.ILLEGAL_ARGUMENT.getCode(), error.getInternalCode());
+		error = (ApiError) advice.handleIO(new IllegalStateException("disk"), request).getBody();
+		assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, error.getStatus());
+		assertEquals(ApiErrorCodes.IO.getCode(), error.getInternalCode());
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	void overriddenDeprecatedHandlersAreStillCalled (){
+		RestControllerAdvice advice = new RestControllerAdvice() {
+			@Override
+			public ResponseEntity<Object> handleIllegalArgumen(IllegalArgumentException ex, WebRequest request) {
+				return new ResponseEntity<>("overridden", HttpStatus.BAD_REQUEST);
+			}
+		};
+		// NumberFormatException is converted by the IllegalArgumentException mapping
+		assertEquals("overridden", advice.handleAll(new NumberFormatException("bad"), request).getBody());
+	}
+
+	@Test
+	@SuppressWarnings("deprecation")
+	void deprecatedHandlersUseRegisteredMappings (){
+		RestControllerAdvice advice = new RestControllerAdvice() {};
+		advice.getExceptionMappings().register(IOException.class, HttpStatus.SERVICE_UNAVAILABLE,
+				ApiErrorCodes.CONFIGURED_UNAVAILABLE, ex -> "storage unavailable");
+		ApiError error = (ApiError) advice.handleIO(new IOException("disk"), request).getBody();
+		assertEquals(HttpStatus.SERVICE_UNAVAILABLE, error.getStatus());
+		assertEquals("storage unavailable", error.getErrors().get(0));
+	}
+
 	private BindException createTwoBindErrors() {
 		Object toValidate = "somethingToValidate";
 		BindingResult br = new BeanPropertyBindingResult(toValidate, "x");
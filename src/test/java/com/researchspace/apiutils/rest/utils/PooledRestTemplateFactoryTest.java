@@ -0,0 +1,62 @@
+package com.researchspace.apiutils.rest.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+public class PooledRestTemplateFactoryTest {
+
+	@Test
+	public void restTemplatesShareConfiguredPool() throws IOException {
+		try (PooledRestTemplateFactory factory = new PooledRestTemplateFactory(10, 5, Duration.ofSeconds(1),
+				Duration.ofSeconds(2))) {
+			RestTemplate restTemplate = factory.createRestTemplate();
+			assertTrue(restTemplate.getRequestFactory() instanceof HttpComponentsClientHttpRequestFactory);
+			assertTrue(restTemplate.getErrorHandler() instanceof LoggingDefaultResponseErrorHandler);
+			assertEquals(10, factory.getPoolStats().getMax());
+			assertEquals(0, factory.getPoolStats().getLeased());
+		}
+	}
+
+	@Test
+	public void customErrorHandler() throws IOException {
+		try (PooledRestTemplateFactory factory = new PooledRestTemplateFactory()) {
+			RestTemplate restTemplate = factory.createRestTemplate(new DefaultResponseErrorHandler());
+			assertTrue(restTemplate.getErrorHandler() instanceof DefaultResponseErrorHandler);
+		}
+	}
+
+	@Test
+	public void defaultErrorHandlerThrowsForServerErrors() throws IOException {
+		ClientHttpResponse response = Mockito.mock(ClientHttpResponse.class);
+		Mockito.when(response.getRawStatusCode()).thenReturn(500);
+		Mockito.when(response.getStatusCode()).thenReturn(HttpStatus.INTERNAL_SERVER_ERROR);
+		Mockito.when(response.getStatusText()).thenReturn("Internal Server Error");
+		Mockito.when(response.getHeaders()).thenReturn(new HttpHeaders());
+		Mockito.when(response.getBody()).thenReturn(new ByteArrayInputStream(new byte[0]));
+		LoggingDefaultResponseErrorHandler handler = new LoggingDefaultResponseErrorHandler();
+		assertTrue(handler.hasError(response));
+		assertThrows(HttpServerErrorException.class, () -> handler.handleError(response));
+	}
+
+	@Test
+	public void invalidPoolSizeRejected() {
+		assertThrows(IllegalArgumentException.class,
+				() -> new PooledRestTemplateFactory(0, 5, Duration.ofSeconds(1), Duration.ofSeconds(1)));
+	}
+
+}
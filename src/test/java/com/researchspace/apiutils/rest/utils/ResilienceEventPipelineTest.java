@@ -0,0 +1,128 @@
+package com.researchspace.apiutils.rest.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+import com.researchspace.apiutils.ApiError;
+import com.researchspace.apiutils.ApiErrorCodes;
+import com.researchspace.core.util.JacksonUtil;
+
+import io.github.resilience4j.retry.Retry;
+import io.github.resilience4j.retry.RetryConfig;
+import io.vavr.control.Try;
+
+public class ResilienceEventPipelineTest {
+
+	@Test
+	public void ringBufferIsFifoAndBounded() {
+		EventRingBuffer<Integer> buffer = new EventRingBuffer<>(4);
+		assertNull(buffer.poll());
+		for (int i = 0; i < 4; i++) {
+			assertTrue(buffer.offer(i));
+		}
+		assertFalse(buffer.offer(4));
+		assertEquals(0, buffer.poll());
+		assertTrue(buffer.offer(4));
+		for (int i = 1; i <= 4; i++) {
+			assertEquals(i, buffer.poll());
+		}
+		assertNull(buffer.poll());
+	}
+
+	@Test
+	public void ringBufferCapacityMustBePowerOf2() {
+		assertThrows(IllegalArgumentException.class, () -> new EventRingBuffer<>(3));
+	}
+
+	@Test
+	public void retryEventsAreDecodedAndRetained() throws InterruptedException {
+		try (ResilienceEventPipeline pipeline = new ResilienceEventPipeline(16, 10)) {
+			Retry retry = Retry.of("downstream", RetryConfig.custom().maxAttempts(3)
+					.waitDuration(Duration.ofMillis(1)).retryExceptions(HttpServerErrorException.class).build());
+			pipeline.register(retry);
+			Supplier<String> failing = () -> {
+				throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, "some error",
+						createAnApiError(), Charset.defaultCharset());
+			};
+			Try.ofSupplier(Retry.decorateSupplier(retry, failing));
+
+			List<ResilienceEvent> events = awaitEvents(pipeline, "downstream", 3);
+			assertEquals(3, events.size());
+			// newest first
+			assertEquals(ResilienceEvent.Type.RETRY_FAILED, events.get(0).getType());
+			assertEquals(ResilienceEvent.Type.RETRY, events.get(1).getType());
+			assertEquals(ApiErrorCodes.ILLEGAL_ARGUMENT.getCode(), events.get(0).getApiError().getInternalCode());
+			assertEquals(1, pipeline.getRecentEvents("downstream", 1).size());
+			assertEquals(0, pipeline.getDroppedEventCount());
+		}
+	}
+
+	@Test
+	public void idleConsumerIsWokenByNewEvents() throws InterruptedException {
+		try (ResilienceEventPipeline pipeline = new ResilienceEventPipeline(16, 10)) {
+			Retry retry = createRetry("idle-downstream");
+			pipeline.register(retry);
+			// consumer parks without a timeout once the buffer is empty
+			Thread.sleep(100);
+			failTwice(retry);
+			assertEquals(2, awaitEvents(pipeline, "idle-downstream", 2).size());
+			Thread.sleep(100);
+			failTwice(retry);
+			assertEquals(4, awaitEvents(pipeline, "idle-downstream", 4).size());
+		}
+	}
+
+	@Test
+	public void defaultPipelineCannotBeClosed() throws InterruptedException {
+		ResilienceEventPipeline pipeline = ResilienceEventPipeline.getDefault();
+		pipeline.close();
+		Retry retry = createRetry("default-downstream");
+		pipeline.register(retry);
+		failTwice(retry);
+		assertEquals(2, awaitEvents(pipeline, "default-downstream", 2).size());
+	}
+
+	private Retry createRetry(String name) {
+		return Retry.of(name, RetryConfig.custom().maxAttempts(2).waitDuration(Duration.ofMillis(1))
+				.retryExceptions(HttpServerErrorException.class).build());
+	}
+
+	// 1 retry and 1 retry-failed event
+	private void failTwice(Retry retry) {
+		Supplier<String> failing = () -> {
+			throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR);
+		};
+		Try.ofSupplier(Retry.decorateSupplier(retry, failing));
+	}
+
+	private List<ResilienceEvent> awaitEvents(ResilienceEventPipeline pipeline, String name, int expected)
+			throws InterruptedException {
+		for (int i = 0; i < 100; i++) {
+			List<ResilienceEvent> events = pipeline.getRecentEvents(name, expected);
+			if (events.size() == expected) {
+				return events;
+			}
+			Thread.sleep(20);
+		}
+		return pipeline.getRecentEvents(name, expected);
+	}
+
+	byte[] createAnApiError() {
+		ApiError error = new ApiError(HttpStatus.INTERNAL_SERVER_ERROR, ApiErrorCodes.ILLEGAL_ARGUMENT.getCode(),
+				"message", "errorMsg");
+		return JacksonUtil.toJson(error).getBytes();
+	}
+
+}
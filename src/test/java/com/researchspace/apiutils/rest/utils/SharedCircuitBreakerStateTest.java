@@ -0,0 +1,164 @@
+package com.researchspace.apiutils.rest.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker.State;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.vavr.control.Try;
+
+public class SharedCircuitBreakerStateTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	public void clusterFailuresOpenBreakers() {
+		CircuitBreakerStateStore store = new InMemoryCircuitBreakerStateStore();
+		CircuitBreaker nodeA = createBreaker();
+		CircuitBreaker nodeB = createBreaker();
+		try (SharedCircuitBreakerState sharedA = share(nodeA, store, "a");
+				SharedCircuitBreakerState sharedB = share(nodeB, store, "b")) {
+			// each node alone is below the minimum number of calls
+			fail(nodeA, 5);
+			fail(nodeB, 6);
+			sharedA.sync();
+			assertEquals(State.CLOSED, nodeA.getState());
+			sharedB.sync();
+			assertEquals(State.OPEN, nodeB.getState());
+			// b was opened by the cluster failure rate, not its own failures, so its open state isn't copied
+			sharedA.sync();
+			assertEquals(State.CLOSED, nodeA.getState());
+			// still below the minimum locally, but together with b's failures reaches it
+			fail(nodeA, 4);
+			sharedA.sync();
+			assertEquals(State.OPEN, nodeA.getState());
+		}
+	}
+
+	@Test
+	public void locallyOpenedBreakerOpensOtherBreakers() {
+		CircuitBreakerStateStore store = new InMemoryCircuitBreakerStateStore();
+		CircuitBreaker nodeA = createBreaker();
+		CircuitBreaker nodeB = createBreaker();
+		try (SharedCircuitBreakerState sharedA = share(nodeA, store, "a");
+				SharedCircuitBreakerState sharedB = share(nodeB, store, "b")) {
+			fail(nodeA, 10);
+			assertEquals(State.OPEN, nodeA.getState());
+			sharedA.sync();
+			sharedB.sync();
+			assertEquals(State.OPEN, nodeB.getState());
+		}
+	}
+
+	@Test
+	public void recoveredBreakersDontReopenEachOther() throws InterruptedException {
+		CircuitBreakerStateStore store = new InMemoryCircuitBreakerStateStore();
+		CircuitBreakerConfig config = CircuitBreakerConfig.custom().slidingWindowSize(10).minimumNumberOfCalls(10)
+				.waitDurationInOpenState(Duration.ofMillis(50)).permittedNumberOfCallsInHalfOpenState(2).build();
+		CircuitBreaker nodeA = CircuitBreaker.of("snapgene", config);
+		CircuitBreaker nodeB = CircuitBreaker.of("snapgene", config);
+		try (SharedCircuitBreakerState sharedA = share(nodeA, store, "a");
+				SharedCircuitBreakerState sharedB = share(nodeB, store, "b")) {
+			fail(nodeA, 10);
+			sharedA.sync();
+			sharedB.sync();
+			assertEquals(State.OPEN, nodeA.getState());
+			assertEquals(State.OPEN, nodeB.getState());
+
+			Thread.sleep(100);
+			succeed(nodeA, 2);
+			assertEquals(State.CLOSED, nodeA.getState());
+			// b is still open, but only because it copied a's state
+			sharedB.sync();
+			sharedA.sync();
+			assertEquals(State.CLOSED, nodeA.getState());
+
+			succeed(nodeB, 2);
+			assertEquals(State.CLOSED, nodeB.getState());
+			for (int i = 0; i < 3; i++) {
+				sharedA.sync();
+				sharedB.sync();
+			}
+			assertEquals(State.CLOSED, nodeA.getState());
+			assertEquals(State.CLOSED, nodeB.getState());
+		}
+	}
+
+	@Test
+	public void successfulCallsDontOpenBreaker() {
+		CircuitBreakerStateStore store = new InMemoryCircuitBreakerStateStore();
+		CircuitBreaker nodeA = createBreaker();
+		try (SharedCircuitBreakerState sharedA = share(nodeA, store, "a")) {
+			for (int i = 0; i < 20; i++) {
+				nodeA.executeSupplier(() -> "ok");
+			}
+			sharedA.sync();
+			assertEquals(State.CLOSED, nodeA.getState());
+		}
+	}
+
+	@Test
+	public void fileStoreRoundTrip() {
+		FileCircuitBreakerStateStore store = new FileCircuitBreakerStateStore(tempDir);
+		store.publish(new BreakerNodeState("snapgene", "a", 5, 2, false, 0, 1000));
+		store.publish(new BreakerNodeState("snapgene", "a", 3, 4, true, 1500, 2000));
+		store.publish(new BreakerNodeState("snapgene", "node/b", 1, 1, false, 0, 2000));
+		List<BreakerNodeState> states = store.getStates("snapgene");
+		assertEquals(2, states.size());
+		assertEquals(new BreakerNodeState("snapgene", "a", 3, 4, true, 1500, 2000),
+				states.stream().filter(s -> s.getNodeId().equals("a")).findFirst().get());
+		assertEquals(0, store.getStates("other").size());
+	}
+
+	@Test
+	public void fileStoreKeepsSimilarNodeIdsApart() throws IOException {
+		FileCircuitBreakerStateStore store = new FileCircuitBreakerStateStore(tempDir);
+		store.publish(new BreakerNodeState("snapgene", "node/b", 1, 1, false, 0, 2000));
+		store.publish(new BreakerNodeState("snapgene", "node_b", 2, 2, false, 0, 2000));
+		store.publish(new BreakerNodeState("snapgene", "..", 3, 3, false, 0, 2000));
+		assertEquals(3, store.getStates("snapgene").size());
+		try (Stream<Path> files = Files.list(tempDir.resolve("snapgene"))) {
+			assertTrue(files.allMatch(f -> f.toString().endsWith(FileCircuitBreakerStateStore.SUFFIX)));
+		}
+	}
+
+	private SharedCircuitBreakerState share(CircuitBreaker breaker, CircuitBreakerStateStore store, String nodeId) {
+		// long interval so the test controls when state is synchronised
+		return new SharedCircuitBreakerState(breaker, store, nodeId, Duration.ofMinutes(10));
+	}
+
+	private CircuitBreaker createBreaker() {
+		CircuitBreakerConfig config = CircuitBreakerConfig.custom().slidingWindowSize(10).minimumNumberOfCalls(10)
+				.build();
+		return CircuitBreaker.of("snapgene", config);
+	}
+
+	private void fail(CircuitBreaker breaker, int times) {
+		Supplier<String> failing = () -> {
+			throw new IllegalStateException("downstream failure");
+		};
+		for (int i = 0; i < times; i++) {
+			Try.ofSupplier(CircuitBreaker.decorateSupplier(breaker, failing));
+		}
+	}
+
+	private void succeed(CircuitBreaker breaker, int times) {
+		for (int i = 0; i < times; i++) {
+			breaker.executeSupplier(() -> "ok");
+		}
+	}
+
+}
@@ -41,6 +41,25 @@ public class SimpleResilienceFacadeTest {
 		assertEquals(3, calls);
 	}
 	
+	@Test
+	public void downstreamNameIdentifiesCircuitBreaker() {
+		assertEquals(SimpleResilienceFacade.DEFAULT_DOWNSTREAM_NAME,
+				new SimpleResilienceFacade(10, 10).circuitBreaker.getName());
+		assertEquals("other", new SimpleResilienceFacade("other", 10, 10).circuitBreaker.getName());
+	}
+
+	@Test
+	public void recentEventsAreKeptPerDownstreamName() throws InterruptedException {
+		SimpleResilienceFacade failing = new SimpleResilienceFacade("events-failing", 10, 10);
+		SimpleResilienceFacade other = new SimpleResilienceFacade("events-other", 10, 10);
+		failing.makeApiCall(this::createFailed500ApiCall);
+		for (int i = 0; i < 100 && failing.getRecentEvents(3).size() < 3; i++) {
+			Thread.sleep(20);
+		}
+		assertEquals(3, failing.getRecentEvents(3).size());
+		assertTrue(other.getRecentEvents(3).isEmpty());
+	}
+
 	@Test
 	public void retriesAreNotTriggeredFor4xxExceptions() {
 		// make a call every 10ms that will fail